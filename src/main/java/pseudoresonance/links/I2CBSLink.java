@@ -131,7 +131,7 @@ public class I2CBSLink extends I2CLink {
 				packet = (length - i);
 			else
 				packet = PIXY_I2C_MAX_SEND;
-            byte[] send = Arrays.copyOfRange(buffer, i, packet);
+            byte[] send = Arrays.copyOfRange(buffer, i, i + packet);
 
             getBspI2C().write((byte) PIXY_I2C_DEFAULT_ADDR, BusPirateI2C.I2C_WRITE_THEN_READ_CMD, send);
 		
@@ -130,7 +130,7 @@ public class I2CLink implements Link {
 				packet = (length - i);
 			else
 				packet = PIXY_I2C_MAX_SEND;
-			byte[] send = Arrays.copyOfRange(buffer, i, packet);
+			byte[] send = Arrays.copyOfRange(buffer, i, i + packet);
 			i2c.transaction(send, packet, new byte[0], 0);
 		}
 		return length;
@@ -46,6 +46,10 @@ public class I2CLinkNG extends SendableBase implements Link {
 
 	protected I2C i2c;
 
+	private volatile long transactions = 0;
+	private volatile long bytesSent = 0;
+	private volatile long bytesReceived = 0;
+
 	/**
 	 * Opens I2C port
 	 *
@@ -116,6 +120,8 @@ public class I2CLinkNG extends SendableBase implements Link {
 			n = 0;
 			byte[] read = new byte[length - i];
 			i2c.transaction(new byte[0], (byte) 0, read, (length - i));
+			transactions++;
+			bytesReceived += read.length;
 			for (int k = 0; k < read.length; k++) {
 				n++;
 				byte b = read[k];
@@ -156,37 +162,33 @@ public class I2CLinkNG extends SendableBase implements Link {
 				packet = (length - i);
 			else
 				packet = PIXY_I2C_MAX_SEND;
-			byte[] send = Arrays.copyOfRange(buffer, i, packet);
+			byte[] send = Arrays.copyOfRange(buffer, i, i + packet);
 			i2c.transaction(send, packet, new byte[0], 0);
+			transactions++;
+			bytesSent += packet;
 		}
 		return length;
 	}
-	//TODO: Figure OUT later
-	/***
-	 * Write to the DashBroad 
-	 * Not sure how this works but Team 997 said to do it
-	 * @
+	/**
+	 * Publishes link counters to the dashboard as one "Link" entry: transactions,
+	 * bytes sent and bytes received. Vision data is published separately by
+	 * {@link pseudoresonance.pixy2api.Pixy2Telemetry}.
 	 * 
+	 * @param builder Sendable builder
 	 */
 	@Override
-    public void initSendable(SendableBuilder builder) {
+	public void initSendable(SendableBuilder builder) {
 		builder.setSmartDashboardType("PixySensor");
-		NetworkTableEntry entry1 = builder.getEntry("R");
-		NetworkTableEntry entry2 = builder.getEntry("G");
-		NetworkTableEntry entry3 = builder.getEntry("B");
-		NetworkTableEntry entry4 = builder.getEntry("C");
+		NetworkTableEntry entry = builder.getEntry("Link");
+		double[] last = new double[3];
 		builder.setUpdateTable(() -> {
-			try {
-				entry1.setNumber(0);
-				entry2.setNumber(0);
-				entry3.setNumber(0);
-				entry4.setNumber(0);
-			} catch (Exception e) {
-				entry1.setNumber(0);
-				entry2.setNumber(0);
-				entry3.setNumber(0);
-				entry4.setNumber(0);
-			}
+			double t = transactions, s = bytesSent, r = bytesReceived;
+			if (t == last[0] && s == last[1] && r == last[2])
+				return;
+			last[0] = t;
+			last[1] = s;
+			last[2] = r;
+			entry.setDoubleArray(last.clone());
 		});
 	}
 }
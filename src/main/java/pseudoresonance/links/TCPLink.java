@@ -0,0 +1,292 @@
+package pseudoresonance.links;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import pseudoresonance.pixy2api.Pixy2;
+import pseudoresonance.pixy2api.Pixy2.Checksum;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * TCP Link to a Pixy2 attached to another machine running a
+ * {@link TCPLinkServer}
+ * 
+ * Each send and receive call is forwarded as is to the server's link, so Pixy2
+ * behaves exactly as if it was attached locally, only with the network round
+ * trip added to every receive. Sends are not acknowledged and only cost a
+ * write. Uses a non-blocking socket with a selector for connecting as well as
+ * for every transfer, so a lost server makes calls time out instead of
+ * hanging. After a timeout the connection is out
+ * of step with the server, so it is dropped and made again on the next call.
+ * 
+ * Request: operation byte, 16 bit length, then data for a send. Receive reply:
+ * 16 bit result of the server's link, then data if it succeeded. All little
+ * endian like Pixy2 packets.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class TCPLink implements Link {
+	public final static int PIXY_TCP_DEFAULT_PORT = 5806;
+	public final static long PIXY_TCP_DEFAULT_TIMEOUT_MILLIS = 100;
+
+	public final static byte PIXY_TCP_OP_SEND = 0x01;
+	public final static byte PIXY_TCP_OP_RECEIVE = 0x02;
+	public final static int PIXY_TCP_HEADER_SIZE = 3;
+	public final static int PIXY_TCP_RESULT_SIZE = 2;
+	public final static int PIXY_TCP_MAX_LENGTH = 0x7fff;
+
+	private final String host;
+	private int port;
+	private long timeoutMillis = PIXY_TCP_DEFAULT_TIMEOUT_MILLIS;
+
+	private SocketChannel channel = null;
+	private Selector selector = null;
+
+	private final ByteBuffer out = ByteBuffer.allocate(PIXY_TCP_HEADER_SIZE + PIXY_TCP_MAX_LENGTH)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer in = ByteBuffer.allocate(PIXY_TCP_RESULT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Constructs TCP link to a server on the default port
+	 * 
+	 * @param host Host name or address of server
+	 */
+	public TCPLink(String host) {
+		this(host, PIXY_TCP_DEFAULT_PORT);
+	}
+
+	/**
+	 * Constructs TCP link to a server
+	 * 
+	 * @param host Host name or address of server
+	 * @param port TCP port of server
+	 */
+	public TCPLink(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Sets how long to wait for the server
+	 * 
+	 * @param timeoutMillis Timeout in milliseconds
+	 */
+	public void setTimeout(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Connects to server
+	 * 
+	 * @param arg TCP port, or {@link Pixy2#PIXY_DEFAULT_ARGVAL} for the port
+	 *            given to the constructor
+	 * 
+	 * @return Returns 0, or {@link Pixy2#PIXY_RESULT_ERROR} if the server
+	 *         could not be reached
+	 */
+	public int open(int arg) {
+		if (arg != Pixy2.PIXY_DEFAULT_ARGVAL)
+			port = arg;
+		try {
+			connect();
+			return 0;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+	}
+
+	/**
+	 * Connects to server within the timeout, closing any previous connection
+	 * 
+	 * @throws IOException If the server could not be reached in time
+	 */
+	private void connect() throws IOException {
+		close();
+		channel = SocketChannel.open();
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+		if (!channel.connect(new InetSocketAddress(host, port))) {
+			long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+			while (!channel.finishConnect()) {
+				if (!await(SelectionKey.OP_CONNECT, deadline))
+					throw new SocketTimeoutException("Timed out connecting to " + host + ":" + port);
+			}
+		}
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Disconnects from server
+	 */
+	public void close() {
+		try {
+			if (selector != null)
+				selector.close();
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+		}
+		selector = null;
+		channel = null;
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from server's link
+	 * 
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 * 
+	 * @return Length of value read, or Pixy2 error code
+	 */
+	public int receive(byte[] buffer, int length, Checksum cs) {
+		if (cs != null)
+			cs.reset();
+		if (length > PIXY_TCP_MAX_LENGTH)
+			return Pixy2.PIXY_RESULT_ERROR;
+		try {
+			if (channel == null)
+				connect();
+			out.clear();
+			out.put(PIXY_TCP_OP_RECEIVE).putShort((short) length).flip();
+			in.clear();
+			if (!write(out) || !read(in)) {
+				close();
+				return Pixy2.PIXY_RESULT_TIMEOUT;
+			}
+			int res = in.getShort(0);
+			if (res < 0)
+				return res;
+			if (!read(ByteBuffer.wrap(buffer, 0, length))) {
+				close();
+				return Pixy2.PIXY_RESULT_TIMEOUT;
+			}
+		} catch (IOException e) {
+			close();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+		if (cs != null)
+			for (int i = 0; i < length; i++) {
+				int csb = buffer[i] & 0xff;
+				cs.updateChecksum(csb);
+			}
+		return length;
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from server's link
+	 * 
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * 
+	 * @return Length of value read, or Pixy2 error code
+	 */
+	public int receive(byte[] buffer, int length) {
+		return receive(buffer, length, null);
+	}
+
+	/**
+	 * Writes and sends buffer over server's link
+	 * 
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 * 
+	 * @return Length of value sent, or Pixy2 error code
+	 */
+	public int send(byte[] buffer, int length) {
+		if (length > PIXY_TCP_MAX_LENGTH)
+			return Pixy2.PIXY_RESULT_ERROR;
+		try {
+			if (channel == null)
+				connect();
+			out.clear();
+			out.put(PIXY_TCP_OP_SEND).putShort((short) length).put(buffer, 0, length).flip();
+			if (!write(out)) {
+				close();
+				return Pixy2.PIXY_RESULT_TIMEOUT;
+			}
+		} catch (IOException e) {
+			close();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+		return length;
+	}
+
+	/**
+	 * Writes all remaining bytes, waiting for room in the socket buffer
+	 * 
+	 * @param data Bytes to write
+	 * 
+	 * @return Whether all bytes were written before the timeout
+	 * 
+	 * @throws IOException If the connection failed
+	 */
+	private boolean write(ByteBuffer data) throws IOException {
+		long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		while (data.hasRemaining()) {
+			if (channel.write(data) > 0)
+				continue;
+			if (!await(SelectionKey.OP_WRITE, deadline))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Fills remaining bytes, waiting for the server
+	 * 
+	 * @param data Buffer to read into
+	 * 
+	 * @return Whether it was filled before the timeout
+	 * 
+	 * @throws IOException If the connection failed or was closed
+	 */
+	private boolean read(ByteBuffer data) throws IOException {
+		long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		while (data.hasRemaining()) {
+			int n = channel.read(data);
+			if (n < 0)
+				throw new IOException("Connection closed by server");
+			if (n > 0)
+				continue;
+			if (!await(SelectionKey.OP_READ, deadline))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until the socket is ready
+	 * 
+	 * @param ops      Selection key operations to wait for
+	 * @param deadline Time to give up at in {@link System#nanoTime()} units
+	 * 
+	 * @return Whether the socket became ready before the deadline
+	 * 
+	 * @throws IOException If selecting failed
+	 */
+	private boolean await(int ops, long deadline) throws IOException {
+		long millis = (deadline - System.nanoTime()) / 1000000L;
+		if (millis <= 0)
+			return false;
+		channel.keyFor(selector).interestOps(ops);
+		selector.select(millis);
+		selector.selectedKeys().clear();
+		return true;
+	}
+}
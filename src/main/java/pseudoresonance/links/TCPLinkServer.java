@@ -0,0 +1,292 @@
+package pseudoresonance.links;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import pseudoresonance.pixy2api.Pixy2;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Serves a local Link to a {@link TCPLink} on another machine
+ * 
+ * Runs one selector thread that accepts a single client at a time, since
+ * Pixy2 can only talk to one host, and performs the client's send and receive
+ * calls on the local link in order. An artificial delay can be added to every
+ * receive to see how Pixy2 code behaves over a slow network. A client that
+ * stops reading its replies is dropped after a timeout, so it can't stall the
+ * server thread.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class TCPLinkServer implements Runnable {
+
+	private final Link link;
+	private final int port;
+
+	private volatile long delayMicros = 0;
+	private volatile long timeoutMillis = TCPLink.PIXY_TCP_DEFAULT_TIMEOUT_MILLIS;
+
+	private final ByteBuffer in = ByteBuffer.allocate(TCPLink.PIXY_TCP_HEADER_SIZE + TCPLink.PIXY_TCP_MAX_LENGTH)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer out = ByteBuffer.allocate(TCPLink.PIXY_TCP_RESULT_SIZE + TCPLink.PIXY_TCP_MAX_LENGTH)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final byte[] data = new byte[TCPLink.PIXY_TCP_MAX_LENGTH];
+
+	private Selector selector = null;
+	private ServerSocketChannel server = null;
+	private SocketChannel client = null;
+
+	private volatile long requestCount = 0;
+
+	private volatile boolean running = false;
+	private Thread thread = null;
+
+	/**
+	 * Constructs server for a link on the default port
+	 * 
+	 * @param link Opened link to serve
+	 */
+	public TCPLinkServer(Link link) {
+		this(link, TCPLink.PIXY_TCP_DEFAULT_PORT);
+	}
+
+	/**
+	 * Constructs server for a link
+	 * 
+	 * @param link Opened link to serve
+	 * @param port TCP port to listen on
+	 */
+	public TCPLinkServer(Link link, int port) {
+		this.link = link;
+		this.port = port;
+	}
+
+	/**
+	 * Sets delay added to every receive, on top of the real network round trip
+	 * 
+	 * @param delayMicros Delay in microseconds
+	 */
+	public void setDelay(long delayMicros) {
+		this.delayMicros = delayMicros;
+	}
+
+	/**
+	 * Sets how long to wait for a client to take a reply before dropping it
+	 * 
+	 * @param timeoutMillis Timeout in milliseconds
+	 */
+	public void setTimeout(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Starts listening and starts server thread
+	 * 
+	 * @return {@link Pixy2#PIXY_RESULT_OK} if successful, otherwise
+	 *         {@link Pixy2#PIXY_RESULT_ERROR}
+	 */
+	public synchronized int start() {
+		if (thread != null)
+			return Pixy2.PIXY_RESULT_OK;
+		try {
+			selector = Selector.open();
+			server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress(port));
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeAll();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+		running = true;
+		thread = new Thread(this, "TCPLinkServer");
+		thread.setDaemon(true);
+		thread.start();
+		return Pixy2.PIXY_RESULT_OK;
+	}
+
+	/**
+	 * Stops server thread and closes all connections. Does not close the link.
+	 */
+	public synchronized void stop() {
+		if (thread == null)
+			return;
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+		closeAll();
+	}
+
+	/**
+	 * Closes selector, listening socket and client connection
+	 */
+	private void closeAll() {
+		dropClient();
+		try {
+			if (server != null)
+				server.close();
+			if (selector != null)
+				selector.close();
+		} catch (IOException e) {
+		}
+		server = null;
+		selector = null;
+	}
+
+	/**
+	 * Closes client connection
+	 */
+	private void dropClient() {
+		if (client == null)
+			return;
+		try {
+			client.close();
+		} catch (IOException e) {
+		}
+		client = null;
+	}
+
+	/**
+	 * Server thread loop
+	 */
+	@Override
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable())
+						accept();
+					else if (key.isReadable())
+						serve();
+				}
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			if (running)
+				e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Accepts new client, replacing the previous one
+	 * 
+	 * @throws IOException If the listening socket failed
+	 */
+	private void accept() throws IOException {
+		SocketChannel c = server.accept();
+		if (c == null)
+			return;
+		dropClient(); // a reconnecting client gave up on the old connection
+		client = c;
+		client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		client.configureBlocking(false);
+		client.register(selector, SelectionKey.OP_READ);
+		in.clear();
+	}
+
+	/**
+	 * Reads from client and performs every complete request
+	 */
+	private void serve() {
+		try {
+			if (client.read(in) < 0) {
+				dropClient();
+				return;
+			}
+			in.flip();
+			while (in.remaining() >= TCPLink.PIXY_TCP_HEADER_SIZE) {
+				int start = in.position();
+				byte op = in.get(start);
+				int length = in.getShort(start + 1) & 0xffff;
+				if (length > TCPLink.PIXY_TCP_MAX_LENGTH) {
+					dropClient(); // can never fit in the buffer, so the client is broken
+					return;
+				}
+				if (op == TCPLink.PIXY_TCP_OP_SEND) {
+					if (in.remaining() < TCPLink.PIXY_TCP_HEADER_SIZE + length)
+						break;
+					in.position(start + TCPLink.PIXY_TCP_HEADER_SIZE);
+					in.get(data, 0, length);
+					link.send(data, length);
+				} else if (op == TCPLink.PIXY_TCP_OP_RECEIVE) {
+					in.position(start + TCPLink.PIXY_TCP_HEADER_SIZE);
+					long delay = delayMicros;
+					if (delay > 0)
+						TimeUnit.MICROSECONDS.sleep(delay);
+					int res = link.receive(data, length);
+					out.clear();
+					out.putShort((short) Math.min(res, TCPLink.PIXY_TCP_MAX_LENGTH));
+					if (res >= 0)
+						out.put(data, 0, length);
+					out.flip();
+					if (!reply()) {
+						dropClient(); // client stopped reading, so it is out of step
+						return;
+					}
+				} else {
+					dropClient(); // out of step, client reconnects
+					return;
+				}
+				requestCount++;
+			}
+			in.compact();
+		} catch (IOException e) {
+			dropClient();
+		} catch (InterruptedException e) {
+			running = false;
+		}
+	}
+
+	/**
+	 * Writes reply to client. The client is waiting for it, so its buffer
+	 * normally drains quickly and the socket is polled instead of selected.
+	 * 
+	 * @return Whether the whole reply was written before the timeout
+	 * 
+	 * @throws IOException If the connection failed
+	 */
+	private boolean reply() throws IOException {
+		long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		while (out.hasRemaining()) {
+			if (client.write(out) > 0)
+				continue;
+			if (System.nanoTime() - deadline >= 0)
+				return false;
+			Thread.yield();
+		}
+		return true;
+	}
+
+	/**
+	 * @return Number of requests performed on the link
+	 */
+	public long getRequestCount() {
+		return requestCount;
+	}
+
+}
@@ -75,6 +75,12 @@ public class Pixy2 {
 	public final static int PIXY_RCS_MAX_POS = 1000;
 	public final static int PIXY_RCS_CENTER_POS = ((PIXY_RCS_MAX_POS - PIXY_RCS_MIN_POS) / 2);
 
+	// Pre-encoded fixed requests
+	public final static Pixy2Request PIXY_REQUEST_VERSION = Pixy2Request.create(PIXY_TYPE_REQUEST_VERSION);
+	public final static Pixy2Request PIXY_REQUEST_RESOLUTION = Pixy2Request.create(PIXY_TYPE_REQUEST_RESOLUTION,
+			(byte) 0); // for future types of queries
+	public final static Pixy2Request PIXY_REQUEST_FPS = Pixy2Request.create(PIXY_TYPE_REQUEST_FPS);
+
 	public enum LinkType {
 		SPI, I2C, UART;
 	}
@@ -195,6 +201,15 @@ public class Pixy2 {
 		link.close();
 	}
 
+	/**
+	 * Creates an empty batch of requests to send to Pixy2 in a single write
+	 * 
+	 * @return Empty {@link Pixy2Batch}
+	 */
+	public Pixy2Batch createBatch() {
+		return new Pixy2Batch(this);
+	}
+
 	/**
 	 * Get Pixy2 Color Connected Components tracker
 	 * 
@@ -428,10 +443,41 @@ public class Pixy2 {
 		buffer[2] = (byte) type;
 		buffer[3] = (byte) length;
 		// send whole thing -- header and data in one call
-		for (int i = 0; i < length; i++) {
-			buffer[4 + i] = bufferPayload[i];
-		}
-		return link.send(buffer, (byte) (length + PIXY_SEND_HEADER_SIZE));
+		System.arraycopy(bufferPayload, 0, buffer, PIXY_SEND_HEADER_SIZE, length);
+		return link.send(buffer, length + PIXY_SEND_HEADER_SIZE);
+	}
+
+	/**
+	 * Sends pre-encoded request packet to Pixy2
+	 * 
+	 * @param request Pre-encoded {@link Pixy2Request}
+	 * 
+	 * @return Length of bytes sent or Pixy2 error code
+	 */
+	protected int sendPacket(Pixy2Request request) {
+		return link.send(request.getPacket(), request.getPacketLength());
+	}
+
+	/**
+	 * Sends one or more already encoded packets to Pixy2 in a single write
+	 * 
+	 * @param packets Buffer of encoded packets
+	 * @param length  Length of bytes to send
+	 * 
+	 * @return Length of bytes sent or Pixy2 error code
+	 */
+	protected int sendPackets(byte[] packets, int length) {
+		return link.send(packets, length);
+	}
+
+	/**
+	 * Reads 32-bit result value from a result response in buffer
+	 * 
+	 * @return Result value
+	 */
+	protected int getResult() {
+		return ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
+				| (buffer[0] & 0xff);
 	}
 
 	/**
@@ -477,9 +523,7 @@ public class Pixy2 {
 	 * @return Pixy2 error code
 	 */
 	public int getVersion() {
-		length = 0;
-		type = PIXY_TYPE_REQUEST_VERSION;
-		sendPacket();
+		sendPacket(PIXY_REQUEST_VERSION);
 		if (receivePacket() == 0) {
 			if (type == PIXY_TYPE_RESPONSE_VERSION) {
 				version = new Version(buffer);
@@ -496,10 +540,7 @@ public class Pixy2 {
 	 * @return Pixy2 error code
 	 */
 	public byte getResolution() {
-		length = 1;
-		bufferPayload[0] = 0; // for future types of queries
-		type = PIXY_TYPE_REQUEST_RESOLUTION;
-		sendPacket();
+		sendPacket(PIXY_REQUEST_RESOLUTION);
 		if (receivePacket() == 0) {
 			if (type == PIXY_TYPE_RESPONSE_RESOLUTION) {
 				frameWidth = ((buffer[1] & 0xff) << 8) | (buffer[0] & 0xff);
@@ -652,9 +693,7 @@ public class Pixy2 {
 	public byte getFPS() {
 		int res;
 
-		length = 0; // no args
-		type = PIXY_TYPE_REQUEST_FPS;
-		sendPacket();
+		sendPacket(PIXY_REQUEST_FPS); // no args
 		if (receivePacket() == 0 && type == PIXY_TYPE_RESPONSE_RESULT && length == 4) {
 			res = ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
 					| (buffer[0] & 0xff);
@@ -0,0 +1,203 @@
+package pseudoresonance.pixy2api;
+
+import java.awt.Color;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Write-behind cache for Pixy2 servos, LED and lamp
+ * 
+ * Setters only record the newest requested value and return immediately, so
+ * they can be called at loop rate. The {@link Pixy2Poller} thread flushes the
+ * values at a limited rate: values that match what Pixy2 last acknowledged
+ * are dropped, and rapid updates between flushes collapse into the newest
+ * value. All changed actuators are sent together in one {@link Pixy2Batch}.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2Actuators implements Pixy2Poller.Task {
+	public final static double ACTUATORS_DEFAULT_RATE = 50; // Hz
+
+	private final static int NONE = -1;
+
+	private final Pixy2Batch batch;
+
+	// newest requested values, packed so each is a single volatile write
+	private volatile int servos = NONE;
+	private volatile int led = NONE;
+	private volatile int lamp = NONE;
+
+	// values last acknowledged by Pixy2, only used on the poller thread
+	private int ackServos = NONE;
+	private int ackLED = NONE;
+	private int ackLamp = NONE;
+
+	private volatile boolean resend = false;
+	private volatile long periodNanos = (long) (1e9 / ACTUATORS_DEFAULT_RATE);
+	private long lastFlush = 0;
+
+	/**
+	 * Constructs write-behind actuators for Pixy2
+	 * 
+	 * @param pixy Pixy2 instance
+	 */
+	protected Pixy2Actuators(Pixy2 pixy) {
+		this.batch = pixy.createBatch();
+	}
+
+	/**
+	 * Requests servo positions between 0-1000
+	 * 
+	 * @param pan  Pan servo position
+	 * @param tilt Tilt servo position
+	 */
+	public void setServos(int pan, int tilt) {
+		// Limits servo values between the defined min and max
+		pan = (pan >= Pixy2.PIXY_RCS_MAX_POS ? Pixy2.PIXY_RCS_MAX_POS
+				: (pan <= Pixy2.PIXY_RCS_MIN_POS ? Pixy2.PIXY_RCS_MIN_POS : pan));
+		tilt = (tilt >= Pixy2.PIXY_RCS_MAX_POS ? Pixy2.PIXY_RCS_MAX_POS
+				: (tilt <= Pixy2.PIXY_RCS_MIN_POS ? Pixy2.PIXY_RCS_MIN_POS : tilt));
+		servos = (pan << 16) | tilt;
+	}
+
+	/**
+	 * Requests LED color
+	 * 
+	 * @param color Color
+	 */
+	public void setLED(Color color) {
+		setLED(color.getRed(), color.getGreen(), color.getBlue());
+	}
+
+	/**
+	 * Requests LED color
+	 * 
+	 * @param rgb RGB value
+	 */
+	public void setLED(int rgb) {
+		led = rgb & 0xffffff;
+	}
+
+	/**
+	 * Requests LED color between 0-255
+	 * 
+	 * @param r R value
+	 * @param g G value
+	 * @param b B value
+	 */
+	public void setLED(int r, int g, int b) {
+		// Limits rgb values between the min and max
+		r = (r >= 255 ? 255 : (r <= 0 ? 0 : r));
+		g = (g >= 255 ? 255 : (g <= 0 ? 0 : g));
+		b = (b >= 255 ? 255 : (b <= 0 ? 0 : b));
+		led = (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Requests light source state
+	 * 
+	 * @param upper Turns white LEDs on/off
+	 * @param lower Sets RGB values to on/off
+	 */
+	public void setLamp(byte upper, byte lower) {
+		lamp = ((upper & 0xff) << 8) | (lower & 0xff);
+	}
+
+	/**
+	 * Sets maximum rate actuator values are sent to Pixy2
+	 * 
+	 * @param rate Maximum flushes per second
+	 */
+	public void setMaxRate(double rate) {
+		periodNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+	}
+
+	/**
+	 * Forgets acknowledged values so all requested values are sent again, for
+	 * example after Pixy2 has been reset
+	 */
+	public void invalidate() {
+		resend = true;
+	}
+
+	/**
+	 * @return Requested pan servo position, or -1 if never set
+	 */
+	public int getPan() {
+		int s = servos;
+		return s == NONE ? NONE : s >>> 16;
+	}
+
+	/**
+	 * @return Requested tilt servo position, or -1 if never set
+	 */
+	public int getTilt() {
+		int s = servos;
+		return s == NONE ? NONE : s & 0xffff;
+	}
+
+	/**
+	 * @return Requested LED RGB value, or -1 if never set
+	 */
+	public int getLED() {
+		return led;
+	}
+
+	/**
+	 * Flushes changed values if the maximum rate allows
+	 * 
+	 * @param pixy Pixy2 instance
+	 */
+	@Override
+	public void run(Pixy2 pixy) {
+		long now = System.nanoTime();
+		if (now - lastFlush < periodNanos)
+			return;
+		if (flush() > 0)
+			lastFlush = now;
+	}
+
+	/**
+	 * Sends changed values to Pixy2 immediately. Must be called on the poller
+	 * thread.
+	 * 
+	 * @return Number of actuators sent
+	 */
+	public int flush() {
+		if (resend) {
+			resend = false;
+			ackServos = ackLED = ackLamp = NONE;
+		}
+		// read each value once so what is acknowledged is what was sent
+		int s = servos, l = led, m = lamp;
+		int servosIndex = NONE, ledIndex = NONE, lampIndex = NONE;
+		batch.clear();
+		if (s != NONE && s != ackServos) {
+			servosIndex = batch.size();
+			batch.setServos(s >>> 16, s & 0xffff);
+		}
+		if (l != NONE && l != ackLED) {
+			ledIndex = batch.size();
+			batch.setLED((l >> 16) & 0xff, (l >> 8) & 0xff, l & 0xff);
+		}
+		if (m != NONE && m != ackLamp) {
+			lampIndex = batch.size();
+			batch.setLamp((byte) (m >> 8), (byte) m);
+		}
+		int n = batch.size();
+		if (n == 0)
+			return 0;
+		batch.execute();
+		if (servosIndex != NONE && batch.getResult(servosIndex) >= 0)
+			ackServos = s;
+		if (ledIndex != NONE && batch.getResult(ledIndex) >= 0)
+			ackLED = l;
+		if (lampIndex != NONE && batch.getResult(lampIndex) >= 0)
+			ackLamp = m;
+		return n;
+	}
+
+}
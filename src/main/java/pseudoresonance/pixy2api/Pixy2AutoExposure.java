@@ -0,0 +1,253 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Auto-exposure controller nudging camera brightness for detection quality
+ * 
+ * Watches the target blocks of every frame on the {@link Pixy2Poller} thread:
+ * how often a target is seen and how steady the largest target's area is.
+ * At a low rate it also samples the color at the centers of the largest
+ * targets. If the samples are close to clipping or too dark, brightness moves
+ * a small step towards the middle. Otherwise it climbs towards the brightness
+ * where targets are seen most often and steadily, reversing whenever a step
+ * made that worse. Brightness is set from a poller task, after the frame is
+ * handled and before the next poll, so it never delays tracking.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2AutoExposure implements Pixy2Poller.FrameListener, Pixy2Poller.Task {
+	public final static int AE_DEFAULT_BRIGHTNESS = 50;
+	public final static int AE_DEFAULT_STEP = 4;
+	public final static double AE_DEFAULT_RATE = 2;
+	public final static int AE_DEFAULT_DARK = 96;
+	public final static int AE_DEFAULT_BRIGHT = 224;
+	public final static int AE_SAMPLES = 3;
+
+	private final Pixy2Poller poller;
+
+	private volatile int signature = 0;
+	private volatile int step = AE_DEFAULT_STEP;
+	private volatile long periodNanos = (long) (1e9 / AE_DEFAULT_RATE);
+	private volatile int dark = AE_DEFAULT_DARK, bright = AE_DEFAULT_BRIGHT;
+	private volatile int minBrightness = 0, maxBrightness = 255;
+
+	private volatile int brightness = AE_DEFAULT_BRIGHTNESS;
+	private int direction = 1;
+	private double lastScore = -1;
+	private volatile double score = 0;
+	private long lastRun = 0;
+	private volatile boolean pending = true;
+
+	// statistics since the last adjustment, updated on the poller thread
+	private int frames = 0, seen = 0;
+	private double areaSum = 0, areaSquares = 0;
+	private final int[] points = new int[2 * AE_SAMPLES];
+	private final int[] samples = new int[AE_SAMPLES];
+	private final int[] sampleAreas = new int[AE_SAMPLES];
+	private int sampleCount = 0;
+
+	private boolean enabled = false;
+
+	/**
+	 * Constructs disabled auto-exposure controller
+	 * 
+	 * @param poller Poller for the Pixy2 to control
+	 */
+	public Pixy2AutoExposure(Pixy2Poller poller) {
+		this.poller = poller;
+	}
+
+	/**
+	 * Starts or stops controlling brightness. Brightness is set to its current
+	 * value when started.
+	 * 
+	 * @param enabled Whether to control brightness
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		if (this.enabled == enabled)
+			return;
+		this.enabled = enabled;
+		if (enabled) {
+			pending = true;
+			poller.addFrameListener(this);
+			poller.addTask(this);
+		} else {
+			poller.removeTask(this);
+			poller.removeFrameListener(this);
+		}
+	}
+
+	/**
+	 * Sets signature of blocks to expose for
+	 * 
+	 * @param signature Block signature, or 0 for any signature
+	 */
+	public void setSignature(int signature) {
+		this.signature = signature;
+	}
+
+	/**
+	 * Sets brightness to start from
+	 * 
+	 * @param brightness Camera brightness between 0-255
+	 */
+	public void setBrightness(int brightness) {
+		this.brightness = (brightness >= 255 ? 255 : (brightness <= 0 ? 0 : brightness));
+		this.pending = true;
+	}
+
+	/**
+	 * Sets how far and how often brightness is adjusted
+	 * 
+	 * @param step Brightness step
+	 * @param rate Adjustments per second
+	 */
+	public void setStep(int step, double rate) {
+		if (rate <= 0)
+			throw new IllegalArgumentException("Rate must be positive");
+		this.step = Math.max(step, 1);
+		this.periodNanos = (long) (1e9 / rate);
+	}
+
+	/**
+	 * Sets brightness limits
+	 * 
+	 * @param min Minimum brightness
+	 * @param max Maximum brightness
+	 */
+	public void setLimits(int min, int max) {
+		if (min > max)
+			throw new IllegalArgumentException("Minimum must not be greater than maximum");
+		this.minBrightness = Math.max(min, 0);
+		this.maxBrightness = Math.min(max, 255);
+	}
+
+	/**
+	 * Sets color levels of target samples that count as too dark or too bright
+	 * 
+	 * @param dark   Highest channel value below which targets are too dark
+	 * @param bright Highest channel value above which targets are too bright
+	 */
+	public void setThresholds(int dark, int bright) {
+		this.dark = dark;
+		this.bright = bright;
+	}
+
+	/**
+	 * Gathers target statistics from a new frame
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_BLOCKS) == 0)
+			return;
+		frames++;
+		int sig = signature;
+		int largest = -1, largestArea = 0, n = 0;
+		for (int i = 0; i < frame.blockCount; i++) {
+			if (sig != 0 && frame.blockSignature[i] != sig)
+				continue;
+			int area = frame.blockWidth[i] * frame.blockHeight[i];
+			if (area > largestArea) {
+				largest = i;
+				largestArea = area;
+			}
+			// keep centers of the largest few targets to sample, largest first
+			int j = n < AE_SAMPLES ? n++ : n;
+			if (j == AE_SAMPLES && area <= sampleAreas[j - 1])
+				continue;
+			if (j == AE_SAMPLES)
+				j--;
+			for (; j > 0 && sampleAreas[j - 1] < area; j--) {
+				sampleAreas[j] = sampleAreas[j - 1];
+				points[2 * j] = points[2 * j - 2];
+				points[2 * j + 1] = points[2 * j - 1];
+			}
+			sampleAreas[j] = area;
+			points[2 * j] = frame.blockX[i];
+			points[2 * j + 1] = frame.blockY[i];
+		}
+		if (largest >= 0) {
+			seen++;
+			areaSum += largestArea;
+			areaSquares += (double) largestArea * largestArea;
+			sampleCount = n;
+		}
+	}
+
+	/**
+	 * Adjusts brightness at the configured rate, called on the poller thread
+	 * 
+	 * @param pixy Pixy2 instance
+	 */
+	@Override
+	public void run(Pixy2 pixy) {
+		if (pending) {
+			if (pixy.setCameraBrightness(brightness) >= 0)
+				pending = false;
+			return;
+		}
+		long now = System.nanoTime();
+		if (now - lastRun < periodNanos || frames == 0)
+			return;
+		lastRun = now;
+
+		// detection rate, lowered by how much the target's area varies
+		double rate = (double) seen / frames;
+		double stability = 0;
+		if (seen > 0) {
+			double mean = areaSum / seen;
+			double variance = Math.max(0, areaSquares / seen - mean * mean);
+			stability = Math.max(0, 1 - Math.sqrt(variance) / mean);
+		}
+		score = rate * stability;
+
+		int peak = -1;
+		if (sampleCount > 0 && pixy.getVideo().getRGB(points, sampleCount, samples, false) > 0) {
+			for (int i = 0; i < sampleCount; i++) {
+				int rgb = samples[i];
+				if (rgb != Pixy2Video.VIDEO_RGB_ERROR)
+					peak = Math.max(peak,
+							Math.max((rgb >> 16) & 0xff, Math.max((rgb >> 8) & 0xff, rgb & 0xff)));
+			}
+		}
+
+		int next = brightness;
+		if (peak >= bright)
+			next -= step;
+		else if (peak >= 0 && peak < dark)
+			next += step;
+		else if (score < 1) {
+			if (score < lastScore)
+				direction = -direction;
+			next += direction * step;
+		}
+		lastScore = score;
+		frames = seen = sampleCount = 0;
+		areaSum = areaSquares = 0;
+
+		next = (next >= maxBrightness ? maxBrightness : (next <= minBrightness ? minBrightness : next));
+		if (next != brightness && pixy.setCameraBrightness(next) >= 0)
+			brightness = next;
+	}
+
+	/**
+	 * @return Current camera brightness
+	 */
+	public int getBrightness() {
+		return brightness;
+	}
+
+	/**
+	 * @return Score of the last adjustment period, from 0 to 1
+	 */
+	public double getScore() {
+		return score;
+	}
+
+}
@@ -0,0 +1,277 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Batch of Pixy2 requests sent back to back in one link write
+ * 
+ * Requests are encoded into one contiguous buffer and sent with a single
+ * {@link pseudoresonance.links.Link} write. The responses are then read and
+ * demultiplexed in the order the requests were added, so a control loop that
+ * sets servos, sets the LED and polls blocks pays for one bus turnaround
+ * instead of three. Block and line feature responses update the caches of
+ * {@link Pixy2CCC} and {@link Pixy2Line} as if they had been requested
+ * individually.
+ * 
+ * A batch is reusable: call {@link #clear()} and add new requests, or call
+ * {@link #execute()} again to resend the same requests.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2Batch {
+	public final static int BATCH_MAX_REQUESTS = 16;
+	public final static int BATCH_BUFFERSIZE = Pixy2.PIXY_BUFFERSIZE + Pixy2.PIXY_SEND_HEADER_SIZE;
+
+	private final Pixy2 pixy;
+
+	private final byte[] packets = new byte[BATCH_BUFFERSIZE];
+	private int packetsLength = 0;
+
+	private final byte[] types = new byte[BATCH_MAX_REQUESTS];
+	private final int[] results = new int[BATCH_MAX_REQUESTS];
+	private int count = 0;
+
+	/**
+	 * Constructs empty batch
+	 * 
+	 * @param pixy Pixy2 instance
+	 */
+	protected Pixy2Batch(Pixy2 pixy) {
+		this.pixy = pixy;
+	}
+
+	/**
+	 * Adds pre-encoded request to batch
+	 * 
+	 * @param request Pre-encoded {@link Pixy2Request}
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch add(Pixy2Request request) {
+		int offset = reserve(request.getType(), request.getPayloadLength());
+		request.copyTo(packets, offset);
+		return this;
+	}
+
+	/**
+	 * Adds servo request to batch, values are limited between 0-1000
+	 * 
+	 * @param pan  Pan servo position
+	 * @param tilt Tilt servo position
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch setServos(int pan, int tilt) {
+		// Limits servo values between the defined min and max
+		pan = (pan >= Pixy2.PIXY_RCS_MAX_POS ? Pixy2.PIXY_RCS_MAX_POS
+				: (pan <= Pixy2.PIXY_RCS_MIN_POS ? Pixy2.PIXY_RCS_MIN_POS : pan));
+		tilt = (tilt >= Pixy2.PIXY_RCS_MAX_POS ? Pixy2.PIXY_RCS_MAX_POS
+				: (tilt <= Pixy2.PIXY_RCS_MIN_POS ? Pixy2.PIXY_RCS_MIN_POS : tilt));
+
+		int offset = reserve(Pixy2.PIXY_TYPE_REQUEST_SERVO, 4) + Pixy2.PIXY_SEND_HEADER_SIZE;
+		packets[offset] = (byte) (pan & 0xff);
+		packets[offset + 1] = (byte) ((pan >> 8) & 0xff);
+		packets[offset + 2] = (byte) (tilt & 0xff);
+		packets[offset + 3] = (byte) ((tilt >> 8) & 0xff);
+		return this;
+	}
+
+	/**
+	 * Adds LED color request to batch, values are limited between 0-255
+	 * 
+	 * @param r R value
+	 * @param g G value
+	 * @param b B value
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch setLED(int r, int g, int b) {
+		// Limits rgb values between the min and max
+		r = (r >= 255 ? 255 : (r <= 0 ? 0 : r));
+		g = (g >= 255 ? 255 : (g <= 0 ? 0 : g));
+		b = (b >= 255 ? 255 : (b <= 0 ? 0 : b));
+
+		int offset = reserve(Pixy2.PIXY_TYPE_REQUEST_LED, 3) + Pixy2.PIXY_SEND_HEADER_SIZE;
+		packets[offset] = (byte) r;
+		packets[offset + 1] = (byte) g;
+		packets[offset + 2] = (byte) b;
+		return this;
+	}
+
+	/**
+	 * Adds lamp request to batch
+	 * 
+	 * @param upper Turns white LEDs on/off
+	 * @param lower Sets RGB values to on/off
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch setLamp(byte upper, byte lower) {
+		int offset = reserve(Pixy2.PIXY_TYPE_REQUEST_LAMP, 2) + Pixy2.PIXY_SEND_HEADER_SIZE;
+		packets[offset] = upper;
+		packets[offset + 1] = lower;
+		return this;
+	}
+
+	/**
+	 * Adds camera brightness request to batch, value is limited between 0-255
+	 * 
+	 * @param brightness Camera brightness
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch setCameraBrightness(int brightness) {
+		// Limits brightness between the min and max
+		brightness = (brightness >= 255 ? 255 : (brightness <= 0 ? 0 : brightness));
+
+		int offset = reserve(Pixy2.PIXY_TYPE_REQUEST_BRIGHTNESS, 1) + Pixy2.PIXY_SEND_HEADER_SIZE;
+		packets[offset] = (byte) brightness;
+		return this;
+	}
+
+	/**
+	 * Adds signature blocks request to batch. The result is the number of blocks
+	 * received, which are available from {@link Pixy2CCC#getBlocks()}.
+	 * 
+	 * @param sigmap    Sigmap to look for
+	 * @param maxBlocks Maximum blocks to look for
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch getBlocks(int sigmap, int maxBlocks) {
+		int offset = reserve(Pixy2CCC.CCC_REQUEST_BLOCKS, 2) + Pixy2.PIXY_SEND_HEADER_SIZE;
+		packets[offset] = (byte) sigmap;
+		packets[offset + 1] = (byte) maxBlocks;
+		return this;
+	}
+
+	/**
+	 * Adds line features request to batch. The result is the bitmask of features
+	 * received, which are available from {@link Pixy2Line}.
+	 * 
+	 * @param type     Type of features to get
+	 * @param features Features to get
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch getFeatures(byte type, byte features) {
+		return add(Pixy2Line.createFeaturesRequest(type, features));
+	}
+
+	/**
+	 * Adds framerate request to batch. The result is the framerate.
+	 * 
+	 * @return This batch
+	 */
+	public Pixy2Batch getFPS() {
+		return add(Pixy2.PIXY_REQUEST_FPS);
+	}
+
+	/**
+	 * Sends all requests in one write and reads their responses in order
+	 * 
+	 * If a response cannot be read, the stream is out of sync and all remaining
+	 * results are set to {@link Pixy2#PIXY_RESULT_ERROR}.
+	 * 
+	 * @return Number of requests with a non-negative result or Pixy2 error code
+	 */
+	public int execute() {
+		if (count == 0)
+			return 0;
+		if (pixy.sendPackets(packets, packetsLength) < 0)
+			return Pixy2.PIXY_RESULT_ERROR;
+		int ok = 0;
+		for (int i = 0; i < count; i++) {
+			if (pixy.receivePacket() != 0) {
+				for (; i < count; i++)
+					results[i] = Pixy2.PIXY_RESULT_ERROR; // some kind of bitstream error
+				break;
+			}
+			results[i] = demultiplex(types[i]);
+			if (results[i] >= 0)
+				ok++;
+		}
+		return ok;
+	}
+
+	/**
+	 * Interprets response currently in the Pixy2 buffer for a request type
+	 * 
+	 * @param requestType Type of request the response belongs to
+	 * 
+	 * @return Result value or Pixy2 error code
+	 */
+	private int demultiplex(byte requestType) {
+		if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR)
+			return pixy.buffer[0]; // busy, program changing, etc.
+		switch (requestType) {
+		case Pixy2CCC.CCC_REQUEST_BLOCKS:
+			if (pixy.type == Pixy2CCC.CCC_RESPONSE_BLOCKS)
+				return pixy.ccc.parseBlocks();
+			break;
+		case Pixy2Line.LINE_REQUEST_GET_FEATURES:
+			if (pixy.type == Pixy2Line.LINE_RESPONSE_GET_FEATURES)
+				return pixy.line.parseFeatures();
+			break;
+		default:
+			if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4)
+				return pixy.getResult();
+		}
+		return Pixy2.PIXY_RESULT_ERROR;
+	}
+
+	/**
+	 * Reserves space for a request and writes its header
+	 * 
+	 * @param type   Request type
+	 * @param length Payload length
+	 * 
+	 * @return Offset of request header in packet buffer
+	 */
+	private int reserve(byte type, int length) {
+		if (count >= BATCH_MAX_REQUESTS || packetsLength + Pixy2.PIXY_SEND_HEADER_SIZE + length > packets.length)
+			throw new IllegalStateException("Batch is full");
+		int offset = packetsLength;
+		packets[offset] = (byte) (Pixy2.PIXY_NO_CHECKSUM_SYNC & 0xff);
+		packets[offset + 1] = (byte) ((Pixy2.PIXY_NO_CHECKSUM_SYNC >> 8) & 0xff);
+		packets[offset + 2] = type;
+		packets[offset + 3] = (byte) length;
+		packetsLength += Pixy2.PIXY_SEND_HEADER_SIZE + length;
+		types[count] = type;
+		results[count] = Pixy2.PIXY_RESULT_ERROR;
+		count++;
+		return offset;
+	}
+
+	/**
+	 * Gets result of a request after {@link #execute()}
+	 * 
+	 * @param index Index of request in order added
+	 * 
+	 * @return Result value or Pixy2 error code
+	 */
+	public int getResult(int index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		return results[index];
+	}
+
+	/**
+	 * @return Number of requests in batch
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Removes all requests from batch
+	 */
+	public void clear() {
+		count = 0;
+		packetsLength = 0;
+	}
+
+}
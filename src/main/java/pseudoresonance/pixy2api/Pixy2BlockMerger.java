@@ -0,0 +1,280 @@
+package pseudoresonance.pixy2api;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Merges blocks of one object split apart by uneven lighting
+ * 
+ * Pixy2 can split one object into several neighbouring blocks with the same
+ * signature. Blocks with the same signature whose bounding boxes overlap or
+ * are within a gap of each other are joined with union-find, and each group
+ * becomes one block covering the whole group. The merged block takes the
+ * tracking index and angle of the largest block in its group and the age of
+ * the oldest, and its combined pixel area is kept separately. Color code
+ * blocks are passed through unmerged. Everything is preallocated, so merging
+ * a full frame takes microseconds.
+ * 
+ * Can be used directly with {@link #merge(Pixy2Frame, Pixy2Frame)}, or added
+ * to a {@link Pixy2Poller} as a frame listener and read lock-free with
+ * {@link #getBlocks(Pixy2Frame, int[], int[])}, which copies the combined areas
+ * and member counts of the same frame along with its merged blocks.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2BlockMerger implements Pixy2Poller.FrameListener {
+	public final static int MERGER_DEFAULT_GAP = 4;
+
+	private volatile int gap = MERGER_DEFAULT_GAP;
+
+	private final int[] parent = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] left = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] right = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] top = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] bottom = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] output = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+
+	private final int[] largest = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] area = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] members = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private int mergedCount = 0;
+
+	private final Pixy2Frame work = new Pixy2Frame();
+
+	// latest merged frame with its areas and member counts, published together
+	private final Pixy2Frame latest = new Pixy2Frame();
+	private final int[] latestArea = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] latestMembers = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * Sets largest gap between blocks that are still merged
+	 * 
+	 * @param gap Gap in pixels, 0 to only merge touching or overlapping blocks
+	 */
+	public void setGap(int gap) {
+		this.gap = gap;
+	}
+
+	/**
+	 * @return Largest gap between blocks that are still merged, in pixels
+	 */
+	public int getGap() {
+		return gap;
+	}
+
+	/**
+	 * Merges blocks of a new frame and publishes them, called on the poller
+	 * thread
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public synchronized void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_BLOCKS) == 0)
+			return;
+		merge(frame, work);
+		long stamp = lock.writeLock();
+		try {
+			latest.copyFrom(work);
+			System.arraycopy(area, 0, latestArea, 0, work.blockCount);
+			System.arraycopy(members, 0, latestMembers, 0, work.blockCount);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Copies the merged blocks of the latest frame
+	 * 
+	 * @param dest Frame to copy merged blocks into
+	 * 
+	 * @return Whether a frame has been received yet
+	 */
+	public boolean getBlocks(Pixy2Frame dest) {
+		return getBlocks(dest, null, null);
+	}
+
+	/**
+	 * Copies the merged blocks of the latest frame along with their combined
+	 * areas and member counts, without blocking the poller thread
+	 * 
+	 * @param dest         Frame to copy merged blocks into
+	 * @param areas        Array of at least {@link Pixy2Frame#FRAME_MAX_BLOCKS}
+	 *                     to copy combined pixel areas into, or null
+	 * @param memberCounts Array of at least {@link Pixy2Frame#FRAME_MAX_BLOCKS}
+	 *                     to copy numbers of blocks merged into each into, or
+	 *                     null
+	 * 
+	 * @return Whether a frame has been received yet
+	 */
+	public boolean getBlocks(Pixy2Frame dest, int[] areas, int[] memberCounts) {
+		while (true) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				dest.copyFrom(latest);
+				int n = dest.blockCount;
+				if (areas != null)
+					System.arraycopy(latestArea, 0, areas, 0, n);
+				if (memberCounts != null)
+					System.arraycopy(latestMembers, 0, memberCounts, 0, n);
+				if (lock.validate(stamp))
+					return dest.sequence != 0;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Merges blocks of a frame
+	 * 
+	 * @param src  Frame with blocks to merge
+	 * @param dest Frame to write merged blocks into, must not be src
+	 * 
+	 * @return Number of merged blocks
+	 */
+	public synchronized int merge(Pixy2Frame src, Pixy2Frame dest) {
+		int n = src.blockCount;
+		// edges in half pixels, since x and y are block centers
+		int gap2 = gap * 2;
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+			left[i] = 2 * src.blockX[i] - src.blockWidth[i];
+			right[i] = 2 * src.blockX[i] + src.blockWidth[i];
+			top[i] = 2 * src.blockY[i] - src.blockHeight[i];
+			bottom[i] = 2 * src.blockY[i] + src.blockHeight[i];
+		}
+
+		// only pairs within a signature bucket are candidates
+		for (int sig = 1; sig <= Pixy2CCC.CCC_MAX_SIGNATURE; sig++) {
+			int count = src.getSignatureCount(sig);
+			for (int k = 0; k < count; k++) {
+				int a = src.getSignatureBlock(sig, k);
+				for (int m = k + 1; m < count; m++) {
+					int b = src.getSignatureBlock(sig, m);
+					if (Math.max(left[a], left[b]) - Math.min(right[a], right[b]) <= gap2
+							&& Math.max(top[a], top[b]) - Math.min(bottom[a], bottom[b]) <= gap2)
+						union(a, b);
+				}
+			}
+		}
+
+		dest.clear();
+		dest.sequence = src.sequence;
+		dest.timestamp = src.timestamp;
+		dest.contents = Pixy2Frame.FRAME_BLOCKS;
+		int out = 0;
+		for (int i = 0; i < n; i++) {
+			int root = find(i);
+			int a = src.blockWidth[i] * src.blockHeight[i];
+			if (root == i) {
+				output[i] = out;
+				dest.blockSignature[out] = src.blockSignature[i];
+				dest.blockAngle[out] = src.blockAngle[i];
+				dest.blockIndex[out] = src.blockIndex[i];
+				dest.blockAge[out] = src.blockAge[i];
+				largest[out] = a;
+				area[out] = a;
+				members[out] = 1;
+				out++;
+				continue;
+			}
+			// extend group box, largest member gives index and angle
+			int o = output[root];
+			if (a > largest[o]) {
+				largest[o] = a;
+				dest.blockIndex[o] = src.blockIndex[i];
+				dest.blockAngle[o] = src.blockAngle[i];
+			}
+			dest.blockAge[o] = Math.max(dest.blockAge[o], src.blockAge[i]);
+			area[o] += a;
+			members[o]++;
+			left[root] = Math.min(left[root], left[i]);
+			right[root] = Math.max(right[root], right[i]);
+			top[root] = Math.min(top[root], top[i]);
+			bottom[root] = Math.max(bottom[root], bottom[i]);
+		}
+		for (int i = 0; i < n; i++) {
+			if (parent[i] != i)
+				continue;
+			int o = output[i];
+			dest.blockX[o] = (left[i] + right[i]) / 4;
+			dest.blockY[o] = (top[i] + bottom[i]) / 4;
+			dest.blockWidth[o] = (right[i] - left[i]) / 2;
+			dest.blockHeight[o] = (bottom[i] - top[i]) / 2;
+		}
+		dest.blockCount = out;
+		dest.indexBlocks();
+		mergedCount = out;
+		return out;
+	}
+
+	/**
+	 * Gets combined pixel area of a merged block from the last
+	 * {@link #merge(Pixy2Frame, Pixy2Frame)}. Only matches the blocks of that
+	 * call, so readers of published frames should use
+	 * {@link #getBlocks(Pixy2Frame, int[], int[])} instead.
+	 * 
+	 * @param i Merged block number
+	 * 
+	 * @return Sum of the areas of the blocks merged into it
+	 */
+	public synchronized int getArea(int i) {
+		return i < mergedCount ? area[i] : 0;
+	}
+
+	/**
+	 * Gets number of blocks in a merged block from the last
+	 * {@link #merge(Pixy2Frame, Pixy2Frame)}, like {@link #getArea(int)}
+	 * 
+	 * @param i Merged block number
+	 * 
+	 * @return Number of blocks merged into it
+	 */
+	public synchronized int getMemberCount(int i) {
+		return i < mergedCount ? members[i] : 0;
+	}
+
+	/**
+	 * @return Number of merged blocks from the last
+	 *         {@link #merge(Pixy2Frame, Pixy2Frame)}
+	 */
+	public synchronized int getMergedCount() {
+		return mergedCount;
+	}
+
+	/**
+	 * Finds group of a block, compressing the path
+	 * 
+	 * @param i Block number
+	 * 
+	 * @return Block number of group root
+	 */
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Joins groups of two blocks, keeping the lower block number as root so roots
+	 * are reached first when emitting blocks
+	 * 
+	 * @param a Block number
+	 * @param b Block number
+	 */
+	private void union(int a, int b) {
+		int ra = find(a), rb = find(b);
+		if (ra < rb)
+			parent[rb] = ra;
+		else if (rb < ra)
+			parent[ra] = rb;
+	}
+
+}
@@ -0,0 +1,131 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Declares which signature blocks a consumer needs from each frame
+ * 
+ * Register queries with a {@link Pixy2QueryPlanner}, which requests only the
+ * signatures and block counts needed by all of its queries, and fans the
+ * results back out. Each query sees the matching blocks of each frame, largest
+ * first and limited to its maximum block count, and can be read lock-free from
+ * any thread.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2BlockQuery {
+	public final static int QUERY_UNLIMITED = 0xff;
+
+	private final int sigmap;
+	private final int maxBlocks;
+
+	private final int[] order = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] area = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final Pixy2Frame work = new Pixy2Frame();
+	private final Pixy2FrameBuffer latest = new Pixy2FrameBuffer();
+
+	/**
+	 * Constructs query for the largest blocks matching a sigmap
+	 * 
+	 * @param sigmap    Sigmap of signatures needed, see {@link Pixy2CCC}
+	 * @param maxBlocks Maximum number of blocks needed, or
+	 *                  {@link #QUERY_UNLIMITED}
+	 */
+	public Pixy2BlockQuery(int sigmap, int maxBlocks) {
+		if (maxBlocks <= 0 || maxBlocks > QUERY_UNLIMITED)
+			throw new IllegalArgumentException("Maximum blocks must be between 1 and " + QUERY_UNLIMITED);
+		this.sigmap = sigmap & 0xff;
+		this.maxBlocks = maxBlocks;
+	}
+
+	/**
+	 * Constructs query for all blocks matching a sigmap
+	 * 
+	 * @param sigmap Sigmap of signatures needed, see {@link Pixy2CCC}
+	 */
+	public Pixy2BlockQuery(int sigmap) {
+		this(sigmap, QUERY_UNLIMITED);
+	}
+
+	/**
+	 * Creates query for only color code blocks
+	 * 
+	 * @param maxBlocks Maximum number of blocks needed
+	 * 
+	 * @return Query
+	 */
+	public static Pixy2BlockQuery colorCodes(int maxBlocks) {
+		return new Pixy2BlockQuery(Pixy2CCC.CCC_COLOR_CODES, maxBlocks);
+	}
+
+	/**
+	 * Selects matching blocks from a new frame and publishes them, called on the
+	 * poller thread
+	 * 
+	 * @param frame New frame
+	 */
+	void update(Pixy2Frame frame) {
+		// insertion sort matching blocks largest first, keeping at most maxBlocks
+		int n = 0;
+		for (int i = 0; i < frame.blockCount; i++) {
+			if ((Pixy2CCC.getSigmapBit(frame.blockSignature[i]) & sigmap) == 0)
+				continue;
+			int a = frame.blockWidth[i] * frame.blockHeight[i];
+			int j = n < maxBlocks ? n++ : n;
+			if (j == maxBlocks && a <= area[j - 1])
+				continue;
+			if (j == maxBlocks)
+				j--;
+			for (; j > 0 && area[j - 1] < a; j--) {
+				area[j] = area[j - 1];
+				order[j] = order[j - 1];
+			}
+			area[j] = a;
+			order[j] = i;
+		}
+
+		work.clear();
+		work.sequence = frame.sequence;
+		work.timestamp = frame.timestamp;
+		work.contents = Pixy2Frame.FRAME_BLOCKS;
+		for (int i = 0; i < n; i++)
+			work.copyBlock(frame, order[i]);
+		latest.publish(work);
+	}
+
+	/**
+	 * Copies the blocks matching this query from the latest frame
+	 * 
+	 * @param dest Frame to copy blocks into
+	 * 
+	 * @return Whether a frame has been received yet
+	 */
+	public boolean getBlocks(Pixy2Frame dest) {
+		return latest.read(dest);
+	}
+
+	/**
+	 * @return Sequence number of the latest frame, or 0 if none received
+	 */
+	public long getSequence() {
+		return latest.getSequence();
+	}
+
+	/**
+	 * @return Sigmap of signatures needed
+	 */
+	public int getSigmap() {
+		return sigmap;
+	}
+
+	/**
+	 * @return Maximum number of blocks needed
+	 */
+	public int getMaxBlocks() {
+		return maxBlocks;
+	}
+
+}
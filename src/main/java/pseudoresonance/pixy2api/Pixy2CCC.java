@@ -59,8 +59,13 @@ public class Pixy2CCC {
 
 	private final Pixy2 pixy;
 
+	// Pre-encoded request for all signatures and as many blocks as will fit
+	public final static Pixy2Request CCC_REQUEST_ALL_BLOCKS = createBlocksRequest(CCC_SIG_ALL, 0xff);
+
 	private ArrayList<Block> blocks = new ArrayList<Block>();
 
+	private Pixy2Request lastRequest = CCC_REQUEST_ALL_BLOCKS;
+
 	/**
 	 * Constructs Pixy2 Color Connected Components tracker
 	 * 
@@ -80,31 +85,68 @@ public class Pixy2CCC {
 	 * @return Pixy2 error code
 	 */
 	public int getBlocks(boolean wait, int sigmap, int maxBlocks) {
+		// reuse the last encoded request if the caller is polling with the same values
+		Pixy2Request request = lastRequest;
+		if (request.getPayload(0) != (byte) sigmap || request.getPayload(1) != (byte) maxBlocks) {
+			request = createBlocksRequest(sigmap, maxBlocks);
+			lastRequest = request;
+		}
+		return getBlocks(wait, request);
+	}
+
+	/**
+	 * Gets signature blocks from Pixy2 using a pre-encoded request
+	 * 
+	 * @param wait    Whether to wait for Pixy2 if data is not available
+	 * @param request Pre-encoded request from
+	 *                {@link #createBlocksRequest(int, int)}
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public int getBlocks(boolean wait, Pixy2Request request) {
+		int res = requestBlocks(wait, request);
+		if (res < 0)
+			return res;
+		return parseBlocks();
+	}
+
+	/**
+	 * Gets signature blocks from Pixy2 into a preallocated frame without
+	 * updating the {@link #getBlocks()} cache
+	 * 
+	 * @param wait    Whether to wait for Pixy2 if data is not available
+	 * @param request Pre-encoded request from
+	 *                {@link #createBlocksRequest(int, int)}
+	 * @param frame   {@link Pixy2Frame} to parse blocks into
+	 * 
+	 * @return Number of blocks or Pixy2 error code
+	 */
+	public int getBlocks(boolean wait, Pixy2Request request, Pixy2Frame frame) {
+		int res = requestBlocks(wait, request);
+		if (res < 0)
+			return res;
+		frame.timestamp = System.nanoTime();
+		return frame.parseBlocks(pixy.buffer, pixy.length);
+	}
+
+	/**
+	 * Sends blocks request and waits until a blocks response is in the Pixy2
+	 * buffer
+	 * 
+	 * @param wait    Whether to wait for Pixy2 if data is not available
+	 * @param request Pre-encoded blocks request
+	 * 
+	 * @return Pixy2 error code
+	 */
+	private int requestBlocks(boolean wait, Pixy2Request request) {
 		long start = System.currentTimeMillis();
 
 		while (true) {
-			// fill in request data
-			pixy.bufferPayload[0] = (byte) sigmap;
-			pixy.bufferPayload[1] = (byte) maxBlocks;
-			pixy.length = 2;
-			pixy.type = CCC_REQUEST_BLOCKS;
-
 			// send request
-			pixy.sendPacket();
+			pixy.sendPacket(request);
 			if (pixy.receivePacket() == 0) {
 				if (pixy.type == CCC_RESPONSE_BLOCKS) {
-					blocks = new ArrayList<Block>();
-					for (int i = 0; i + 13 < pixy.length; i += 14) {
-						Block b = new Block(((pixy.buffer[i + 1] & 0xff) << 8) | (pixy.buffer[i] & 0xff),
-								((pixy.buffer[i + 3] & 0xff) << 8) | (pixy.buffer[i + 2] & 0xff),
-								((pixy.buffer[i + 5] & 0xff) << 8) | (pixy.buffer[i + 4] & 0xff),
-								((pixy.buffer[i + 7] & 0xff) << 8) | (pixy.buffer[i + 6] & 0xff),
-								((pixy.buffer[i + 9] & 0xff) << 8) | (pixy.buffer[i + 8] & 0xff),
-								((pixy.buffer[i + 11] & 0xff) << 8) | (pixy.buffer[i + 10] & 0xff),
-								(pixy.buffer[i + 12] & 0xff), (pixy.buffer[i + 13] & 0xff));
-						blocks.add(b);
-					}
-					return blocks.size();
+					return Pixy2.PIXY_RESULT_OK;
 				} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR) {
 					// deal with busy and program changing states from Pixy (we'll wait)
 					if (pixy.buffer[0] == Pixy2.PIXY_RESULT_BUSY) {
@@ -130,6 +172,51 @@ public class Pixy2CCC {
 		}
 	}
 
+	/**
+	 * Parses signature blocks from a blocks response in the Pixy2 buffer
+	 * 
+	 * @return Number of blocks parsed
+	 */
+	int parseBlocks() {
+		blocks = new ArrayList<Block>();
+		for (int i = 0; i + 13 < pixy.length; i += 14) {
+			Block b = new Block(((pixy.buffer[i + 1] & 0xff) << 8) | (pixy.buffer[i] & 0xff),
+					((pixy.buffer[i + 3] & 0xff) << 8) | (pixy.buffer[i + 2] & 0xff),
+					((pixy.buffer[i + 5] & 0xff) << 8) | (pixy.buffer[i + 4] & 0xff),
+					((pixy.buffer[i + 7] & 0xff) << 8) | (pixy.buffer[i + 6] & 0xff),
+					((pixy.buffer[i + 9] & 0xff) << 8) | (pixy.buffer[i + 8] & 0xff),
+					((pixy.buffer[i + 11] & 0xff) << 8) | (pixy.buffer[i + 10] & 0xff),
+					(pixy.buffer[i + 12] & 0xff), (pixy.buffer[i + 13] & 0xff));
+			blocks.add(b);
+		}
+		return blocks.size();
+	}
+
+	/**
+	 * Gets sigmap bit selecting blocks with a signature
+	 * 
+	 * @param signature Block signature
+	 * 
+	 * @return Sigmap bit, {@link #CCC_COLOR_CODES} for color codes
+	 */
+	public static int getSigmapBit(int signature) {
+		if (signature > CCC_MAX_SIGNATURE)
+			return CCC_COLOR_CODES & 0xff;
+		return signature > 0 ? 1 << (signature - 1) : 0;
+	}
+
+	/**
+	 * Creates pre-encoded request for signature blocks
+	 * 
+	 * @param sigmap    Sigmap to look for
+	 * @param maxBlocks Maximum blocks to look for
+	 * 
+	 * @return Pre-encoded request
+	 */
+	public static Pixy2Request createBlocksRequest(int sigmap, int maxBlocks) {
+		return Pixy2Request.create(CCC_REQUEST_BLOCKS, (byte) sigmap, (byte) maxBlocks);
+	}
+
 	/**
 	 * Gets signature blocks from cache
 	 * 
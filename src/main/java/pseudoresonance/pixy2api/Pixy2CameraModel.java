@@ -0,0 +1,321 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Calibrated camera model converting Pixy2 pixels to robot-relative angles
+ * 
+ * Holds the lens intrinsics, radial distortion and the pose the camera is
+ * mounted at on the robot. {@link #build(Pixy2)} computes per-pixel lookup
+ * tables for the resolution reported by {@link Pixy2#getResolution()}, after
+ * which converting a block or line vector position to yaw, pitch and the
+ * point on the ground it looks at is only table lookups.
+ * 
+ * Robot coordinates have X forward, Y left and Z up. Yaw is positive to the
+ * left and pitch is positive up. Intrinsics default to the 60 by 40 degree
+ * field of view of the Pixy2 lens with no distortion.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2CameraModel {
+	public final static double CAMERA_DEFAULT_HFOV = Math.toRadians(60);
+	public final static double CAMERA_DEFAULT_VFOV = Math.toRadians(40);
+
+	private final static int UNDISTORT_ITERATIONS = 10;
+
+	// Intrinsics as fractions of image width and height
+	private double fx = 0.5 / Math.tan(CAMERA_DEFAULT_HFOV / 2);
+	private double fy = 0.5 / Math.tan(CAMERA_DEFAULT_VFOV / 2);
+	private double cx = 0.5, cy = 0.5;
+	private double k1 = 0, k2 = 0;
+
+	private double mountX = 0, mountY = 0, mountHeight = 0;
+	private double mountYaw = 0, mountPitch = 0, mountRoll = 0;
+
+	private int width = 0, height = 0;
+	private float[] yaw = new float[0];
+	private float[] pitch = new float[0];
+	private float[] groundX = new float[0];
+	private float[] groundY = new float[0];
+
+	/**
+	 * Sets intrinsics from a calibration
+	 * 
+	 * @param calWidth  Image width calibrated at
+	 * @param calHeight Image height calibrated at
+	 * @param fx        Horizontal focal length in pixels
+	 * @param fy        Vertical focal length in pixels
+	 * @param cx        Principal point X in pixels
+	 * @param cy        Principal point Y in pixels
+	 */
+	public synchronized void setIntrinsics(int calWidth, int calHeight, double fx, double fy, double cx, double cy) {
+		this.fx = fx / calWidth;
+		this.fy = fy / calHeight;
+		this.cx = cx / calWidth;
+		this.cy = cy / calHeight;
+	}
+
+	/**
+	 * Sets intrinsics from field of view, with the principal point centered
+	 * 
+	 * @param horizontal Horizontal field of view in radians
+	 * @param vertical   Vertical field of view in radians
+	 */
+	public synchronized void setFieldOfView(double horizontal, double vertical) {
+		this.fx = 0.5 / Math.tan(horizontal / 2);
+		this.fy = 0.5 / Math.tan(vertical / 2);
+		this.cx = 0.5;
+		this.cy = 0.5;
+	}
+
+	/**
+	 * Sets radial distortion coefficients
+	 * 
+	 * @param k1 Second order coefficient
+	 * @param k2 Fourth order coefficient
+	 */
+	public synchronized void setDistortion(double k1, double k2) {
+		this.k1 = k1;
+		this.k2 = k2;
+	}
+
+	/**
+	 * Sets pose camera is mounted at
+	 * 
+	 * @param x      Distance forward of robot origin
+	 * @param y      Distance left of robot origin
+	 * @param height Height above ground, in the units ground positions are wanted
+	 *               in
+	 * @param yaw    Yaw in radians, positive to the left
+	 * @param pitch  Pitch in radians, positive up
+	 * @param roll   Roll in radians, positive clockwise seen from behind
+	 */
+	public synchronized void setMountPose(double x, double y, double height, double yaw, double pitch, double roll) {
+		this.mountX = x;
+		this.mountY = y;
+		this.mountHeight = height;
+		this.mountYaw = yaw;
+		this.mountPitch = pitch;
+		this.mountRoll = roll;
+	}
+
+	/**
+	 * Gets resolution from Pixy2 and builds lookup tables for it
+	 * 
+	 * @param pixy Pixy2 to get resolution from
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public int build(Pixy2 pixy) {
+		int res = pixy.getResolution();
+		if (res < 0)
+			return res;
+		build(pixy.frameWidth, pixy.frameHeight);
+		return Pixy2.PIXY_RESULT_OK;
+	}
+
+	/**
+	 * Builds lookup tables for a resolution, such as the line tracking
+	 * resolution
+	 * 
+	 * @param width  Frame width
+	 * @param height Frame height
+	 */
+	public synchronized void build(int width, int height) {
+		int n = width * height;
+		float[] yaw = new float[n];
+		float[] pitch = new float[n];
+		float[] groundX = new float[n];
+		float[] groundY = new float[n];
+
+		double cr = Math.cos(mountRoll), sr = Math.sin(mountRoll);
+		double cp = Math.cos(mountPitch), sp = Math.sin(mountPitch);
+		double cyaw = Math.cos(mountYaw), syaw = Math.sin(mountYaw);
+		for (int py = 0; py < height; py++) {
+			for (int px = 0; px < width; px++) {
+				// distorted normalized coordinates of pixel center
+				double xd = ((px + 0.5) / width - cx) / fx;
+				double yd = ((py + 0.5) / height - cy) / fy;
+				double x = xd, y = yd;
+				for (int i = 0; i < UNDISTORT_ITERATIONS; i++) {
+					double r2 = x * x + y * y;
+					double scale = 1 + k1 * r2 + k2 * r2 * r2;
+					x = xd / scale;
+					y = yd / scale;
+				}
+
+				// camera ray (right, down, forward) to robot axes, then roll, pitch, yaw
+				double rx = 1, ry = -x, rz = -y;
+				double t = ry * cr - rz * sr;
+				rz = ry * sr + rz * cr;
+				ry = t;
+				t = rx * cp - rz * sp;
+				rz = rx * sp + rz * cp;
+				rx = t;
+				t = rx * cyaw - ry * syaw;
+				ry = rx * syaw + ry * cyaw;
+				rx = t;
+
+				int i = py * width + px;
+				yaw[i] = (float) Math.atan2(ry, rx);
+				pitch[i] = (float) Math.atan2(rz, Math.sqrt(rx * rx + ry * ry));
+				if (rz < 0 && mountHeight > 0) {
+					double s = mountHeight / -rz;
+					groundX[i] = (float) (mountX + rx * s);
+					groundY[i] = (float) (mountY + ry * s);
+				} else {
+					groundX[i] = Float.NaN;
+					groundY[i] = Float.NaN;
+				}
+			}
+		}
+		this.yaw = yaw;
+		this.pitch = pitch;
+		this.groundX = groundX;
+		this.groundY = groundY;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Gets lookup table index of a pixel, limited to the frame
+	 * 
+	 * @param x X position
+	 * @param y Y position
+	 * 
+	 * @return Table index
+	 */
+	private int index(int x, int y) {
+		int w = width, h = height;
+		if (w == 0)
+			throw new IllegalStateException("Camera model has not been built");
+		x = (x >= w ? w - 1 : (x <= 0 ? 0 : x));
+		y = (y >= h ? h - 1 : (y <= 0 ? 0 : y));
+		return y * w + x;
+	}
+
+	/**
+	 * Gets robot-relative yaw of a pixel
+	 * 
+	 * @param x X position
+	 * @param y Y position
+	 * 
+	 * @return Yaw in radians, positive to the left
+	 */
+	public synchronized double getYaw(int x, int y) {
+		return yaw[index(x, y)];
+	}
+
+	/**
+	 * Gets robot-relative pitch of a pixel
+	 * 
+	 * @param x X position
+	 * @param y Y position
+	 * 
+	 * @return Pitch in radians, positive up
+	 */
+	public synchronized double getPitch(int x, int y) {
+		return pitch[index(x, y)];
+	}
+
+	/**
+	 * Gets forward position of the ground point seen at a pixel
+	 * 
+	 * @param x X position
+	 * @param y Y position
+	 * 
+	 * @return Distance forward of robot origin, or NaN if the pixel is above the
+	 *         horizon or no mount height is set
+	 */
+	public synchronized double getGroundX(int x, int y) {
+		return groundX[index(x, y)];
+	}
+
+	/**
+	 * Gets sideways position of the ground point seen at a pixel
+	 * 
+	 * @param x X position
+	 * @param y Y position
+	 * 
+	 * @return Distance left of robot origin, or NaN if the pixel is above the
+	 *         horizon or no mount height is set
+	 */
+	public synchronized double getGroundY(int x, int y) {
+		return groundY[index(x, y)];
+	}
+
+	/**
+	 * Gets distance from robot origin to the ground point seen at a pixel
+	 * 
+	 * @param x X position
+	 * @param y Y position
+	 * 
+	 * @return Ground distance, or NaN if the pixel is above the horizon or no
+	 *         mount height is set
+	 */
+	public synchronized double getGroundDistance(int x, int y) {
+		int i = index(x, y);
+		double gx = groundX[i], gy = groundY[i];
+		return Math.sqrt(gx * gx + gy * gy);
+	}
+
+	/**
+	 * Converts the centers of all blocks of a frame to yaw and pitch
+	 * 
+	 * @param frame Frame with blocks
+	 * @param yaw   Array for yaw of each block in radians, at least
+	 *              {@link Pixy2Frame#FRAME_MAX_BLOCKS} long
+	 * @param pitch Array for pitch of each block in radians, at least
+	 *              {@link Pixy2Frame#FRAME_MAX_BLOCKS} long
+	 * 
+	 * @return Number of blocks converted
+	 */
+	public synchronized int getBlockAngles(Pixy2Frame frame, float[] yaw, float[] pitch) {
+		int n = frame.blockCount;
+		for (int i = 0; i < n; i++) {
+			int t = index(frame.blockX[i], frame.blockY[i]);
+			yaw[i] = this.yaw[t];
+			pitch[i] = this.pitch[t];
+		}
+		return n;
+	}
+
+	/**
+	 * @return Distance camera is mounted forward of robot origin
+	 */
+	public synchronized double getMountX() {
+		return mountX;
+	}
+
+	/**
+	 * @return Distance camera is mounted left of robot origin
+	 */
+	public synchronized double getMountY() {
+		return mountY;
+	}
+
+	/**
+	 * @return Height camera is mounted above ground
+	 */
+	public synchronized double getMountHeight() {
+		return mountHeight;
+	}
+
+	/**
+	 * @return Frame width lookup tables were built for, or 0 if not built
+	 */
+	public synchronized int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return Frame height lookup tables were built for, or 0 if not built
+	 */
+	public synchronized int getHeight() {
+		return height;
+	}
+
+}
@@ -0,0 +1,225 @@
+package pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Debounced change events for line intersections and barcodes
+ * 
+ * Compares each frame with the frames before it on the {@link Pixy2Poller}
+ * thread and calls listeners only when something changes. An intersection
+ * must be in view for a few frames in a row to appear and out of view for a
+ * few frames in a row to disappear. Each barcode code is reported when first
+ * seen, confirmed once it was seen in at least N of the last M frames, and
+ * lost once it wasn't seen in any of them.
+ * 
+ * Set the poller's features request to
+ * {@link Pixy2Line#LINE_REQUEST_MAIN_FEATURES} or
+ * {@link Pixy2Line#LINE_REQUEST_ALL_FEATURES} to use it.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2FeatureEvents implements Pixy2Poller.FrameListener {
+	// Events
+	public final static int EVENT_INTERSECTION_APPEARED = 1;
+	public final static int EVENT_INTERSECTION_DISAPPEARED = 2;
+	public final static int EVENT_BARCODE_SEEN = 3;
+	public final static int EVENT_BARCODE_CONFIRMED = 4;
+	public final static int EVENT_BARCODE_LOST = 5;
+
+	public final static int EVENTS_DEFAULT_APPEAR_FRAMES = 2;
+	public final static int EVENTS_DEFAULT_DISAPPEAR_FRAMES = 3;
+	public final static int EVENTS_DEFAULT_VOTES = 3;
+	public final static int EVENTS_DEFAULT_VOTE_FRAMES = 5;
+	public final static int EVENTS_MAX_VOTE_FRAMES = 32;
+
+	private final static int CODES = 256;
+
+	/**
+	 * Receives feature change events on the poller thread
+	 */
+	public interface Listener {
+		/**
+		 * Called when a feature changes
+		 * 
+		 * @param event Event, one of the EVENT constants
+		 * @param value Number of lines at the intersection, or barcode code
+		 * @param x     X position last seen at
+		 * @param y     Y position last seen at
+		 */
+		void featureChanged(int event, int value, int x, int y);
+	}
+
+	private volatile Listener[] listeners = new Listener[0];
+
+	private int appearFrames = EVENTS_DEFAULT_APPEAR_FRAMES;
+	private int disappearFrames = EVENTS_DEFAULT_DISAPPEAR_FRAMES;
+	private int votes = EVENTS_DEFAULT_VOTES;
+	private int voteMask = (1 << EVENTS_DEFAULT_VOTE_FRAMES) - 1;
+
+	private boolean intersection = false;
+	private int intersectionRun = 0;
+	private int intersectionX = 0, intersectionY = 0, intersectionBranches = 0;
+
+	private final int[] codeHistory = new int[CODES];
+	private final boolean[] codeConfirmed = new boolean[CODES];
+	private final int[] codeX = new int[CODES];
+	private final int[] codeY = new int[CODES];
+	private final boolean[] codeInFrame = new boolean[CODES];
+
+	private volatile long eventCount = 0;
+
+	/**
+	 * Adds listener
+	 * 
+	 * @param listener Listener
+	 */
+	public synchronized void addListener(Listener listener) {
+		Listener[] l = Arrays.copyOf(listeners, listeners.length + 1);
+		l[l.length - 1] = listener;
+		listeners = l;
+	}
+
+	/**
+	 * Removes listener added with {@link #addListener(Listener)}
+	 * 
+	 * @param listener Listener
+	 */
+	public synchronized void removeListener(Listener listener) {
+		Listener[] l = listeners;
+		for (int i = 0; i < l.length; i++) {
+			if (l[i] == listener) {
+				Listener[] r = Arrays.copyOf(l, l.length - 1);
+				System.arraycopy(l, i + 1, r, i, l.length - i - 1);
+				listeners = r;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Sets how many frames in a row an intersection must be in or out of view to
+	 * appear or disappear
+	 * 
+	 * @param appear    Frames in view to appear
+	 * @param disappear Frames out of view to disappear
+	 */
+	public synchronized void setDebounce(int appear, int disappear) {
+		this.appearFrames = Math.max(appear, 1);
+		this.disappearFrames = Math.max(disappear, 1);
+	}
+
+	/**
+	 * Sets barcode voting
+	 * 
+	 * @param votes  Number of frames a code must be seen in to be confirmed
+	 * @param frames Number of latest frames counted, up to
+	 *               {@link #EVENTS_MAX_VOTE_FRAMES}
+	 */
+	public synchronized void setVoting(int votes, int frames) {
+		if (frames < 1 || frames > EVENTS_MAX_VOTE_FRAMES || votes < 1 || votes > frames)
+			throw new IllegalArgumentException("Votes must be between 1 and frames, frames between 1 and "
+					+ EVENTS_MAX_VOTE_FRAMES);
+		this.votes = votes;
+		this.voteMask = frames == EVENTS_MAX_VOTE_FRAMES ? -1 : (1 << frames) - 1;
+		for (int c = 0; c < CODES; c++)
+			codeHistory[c] &= voteMask;
+	}
+
+	/**
+	 * Compares new frame with earlier frames and fires events
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public synchronized void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_LINE) == 0)
+			return;
+
+		boolean present = frame.intersectionCount > 0;
+		for (int i = 0; i < frame.vectorCount && !present; i++)
+			present = (frame.vectorFlags[i] & Pixy2Line.LINE_FLAG_INTERSECTION_PRESENT) != 0;
+		if (frame.intersectionCount > 0) {
+			intersectionX = frame.intersectionX[0];
+			intersectionY = frame.intersectionY[0];
+			intersectionBranches = frame.intersectionNumber[0];
+		}
+		if (present == intersection)
+			intersectionRun = 0;
+		else if (++intersectionRun >= (present ? appearFrames : disappearFrames)) {
+			intersection = present;
+			intersectionRun = 0;
+			fire(present ? EVENT_INTERSECTION_APPEARED : EVENT_INTERSECTION_DISAPPEARED, intersectionBranches,
+					intersectionX, intersectionY);
+		}
+
+		for (int i = 0; i < frame.barcodeCount; i++) {
+			int c = frame.barcodeCode[i] & (CODES - 1);
+			codeInFrame[c] = true;
+			codeX[c] = frame.barcodeX[i];
+			codeY[c] = frame.barcodeY[i];
+		}
+		for (int c = 0; c < CODES; c++) {
+			int history = codeHistory[c];
+			boolean seen = codeInFrame[c];
+			if (history == 0 && !seen)
+				continue;
+			codeInFrame[c] = false;
+			int h = ((history << 1) | (seen ? 1 : 0)) & voteMask;
+			codeHistory[c] = h;
+			if (seen && history == 0)
+				fire(EVENT_BARCODE_SEEN, c, codeX[c], codeY[c]);
+			if (!codeConfirmed[c] && Integer.bitCount(h) >= votes) {
+				codeConfirmed[c] = true;
+				fire(EVENT_BARCODE_CONFIRMED, c, codeX[c], codeY[c]);
+			} else if (codeConfirmed[c] && h == 0) {
+				codeConfirmed[c] = false;
+				fire(EVENT_BARCODE_LOST, c, codeX[c], codeY[c]);
+			}
+		}
+	}
+
+	/**
+	 * Calls all listeners
+	 * 
+	 * @param event Event
+	 * @param value Event value
+	 * @param x     X position
+	 * @param y     Y position
+	 */
+	private void fire(int event, int value, int x, int y) {
+		eventCount++;
+		for (Listener listener : listeners)
+			listener.featureChanged(event, value, x, y);
+	}
+
+	/**
+	 * @return Whether an intersection is in view after debouncing
+	 */
+	public synchronized boolean isIntersectionVisible() {
+		return intersection;
+	}
+
+	/**
+	 * Gets whether a barcode is confirmed
+	 * 
+	 * @param code Barcode code
+	 * 
+	 * @return Whether the code is confirmed and not lost yet
+	 */
+	public synchronized boolean isBarcodeConfirmed(int code) {
+		return codeConfirmed[code & (CODES - 1)];
+	}
+
+	/**
+	 * @return Number of events fired
+	 */
+	public long getEventCount() {
+		return eventCount;
+	}
+
+}
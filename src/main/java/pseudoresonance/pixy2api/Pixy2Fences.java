@@ -0,0 +1,55 @@
+package pseudoresonance.pixy2api;
+
+import java.lang.reflect.Field;
+
+import sun.misc.Unsafe;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Memory fences for data shared outside the Java memory model
+ * 
+ * Plain accesses to memory-mapped files are not ordered by volatile fields,
+ * and Java 8 has no public fence API, so these use sun.misc.Unsafe. All use
+ * of Unsafe is kept in this class, so replacing it with the VarHandle fences
+ * of Java 9 only touches one file once the build moves past Java 8.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+final class Pixy2Fences {
+
+	private final static Unsafe UNSAFE;
+
+	static {
+		try {
+			Field field = Unsafe.class.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			UNSAFE = (Unsafe) field.get(null);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private Pixy2Fences() {
+	}
+
+	/**
+	 * Keeps stores before the fence from moving after loads or stores following
+	 * it
+	 */
+	static void storeFence() {
+		UNSAFE.storeFence();
+	}
+
+	/**
+	 * Keeps loads before the fence from moving after loads or stores following
+	 * it
+	 */
+	static void loadFence() {
+		UNSAFE.loadFence();
+	}
+
+}
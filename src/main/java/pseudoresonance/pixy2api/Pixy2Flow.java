@@ -0,0 +1,87 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Reactive streams interfaces with the same methods and rules as
+ * java.util.concurrent.Flow
+ * 
+ * This library targets Java 8, which doesn't have Flow yet. Implementations
+ * can be adapted to Flow or Reactive Streams by forwarding each method.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public final class Pixy2Flow {
+
+	private Pixy2Flow() {
+	}
+
+	/**
+	 * Producer of items received by subscribers
+	 * 
+	 * @param <T> Item type
+	 */
+	public interface Publisher<T> {
+		/**
+		 * Adds subscriber, which is first called with
+		 * {@link Subscriber#onSubscribe(Subscription)}
+		 * 
+		 * @param subscriber Subscriber
+		 */
+		public void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * Receiver of items, called one signal at a time
+	 * 
+	 * @param <T> Item type
+	 */
+	public interface Subscriber<T> {
+		/**
+		 * Called before any other signal
+		 * 
+		 * @param subscription Subscription to request items from or cancel
+		 */
+		public void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called with the next item, at most as many times as requested
+		 * 
+		 * @param item Item
+		 */
+		public void onNext(T item);
+
+		/**
+		 * Called when the subscription failed, no other signals follow
+		 * 
+		 * @param throwable Error
+		 */
+		public void onError(Throwable throwable);
+
+		/**
+		 * Called when no more items will be sent, no other signals follow
+		 */
+		public void onComplete();
+	}
+
+	/**
+	 * Link between a publisher and a subscriber
+	 */
+	public interface Subscription {
+		/**
+		 * Adds demand for more items
+		 * 
+		 * @param n Number of items, {@link Long#MAX_VALUE} for unbounded
+		 */
+		public void request(long n);
+
+		/**
+		 * Stops sending items, possibly after some already on their way
+		 */
+		public void cancel();
+	}
+
+}
@@ -0,0 +1,643 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Preallocated snapshot of one Pixy2 camera frame
+ * 
+ * Holds the signature blocks and line features parsed from one poll in
+ * primitive arrays sized for the largest packet Pixy2 can send, so frames can
+ * be parsed, copied and published without allocating. Frames are filled by
+ * {@link Pixy2CCC#getBlocks(boolean, Pixy2Request, Pixy2Frame)} and
+ * {@link Pixy2Line#getFeatures(boolean, Pixy2Request, Pixy2Frame)}, usually
+ * on the {@link Pixy2Poller} thread.
+ * 
+ * Blocks are also indexed by signature, with each signature's blocks sorted
+ * largest first, so the largest block of a signature, the number of blocks of
+ * a signature and the color code blocks can be found without scanning.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2Frame {
+	public final static int FRAME_BLOCK_SIZE = 14;
+	public final static int FRAME_VECTOR_SIZE = 6;
+	public final static int FRAME_INTERSECTION_SIZE = 4 + (4 * Pixy2Line.LINE_MAX_INTERSECTION_LINES);
+	public final static int FRAME_BARCODE_SIZE = 4;
+
+	public final static int FRAME_MAX_BLOCKS = Pixy2.PIXY_BUFFERSIZE / FRAME_BLOCK_SIZE;
+	public final static int FRAME_MAX_VECTORS = Pixy2.PIXY_BUFFERSIZE / FRAME_VECTOR_SIZE;
+	public final static int FRAME_MAX_INTERSECTIONS = Pixy2.PIXY_BUFFERSIZE / FRAME_INTERSECTION_SIZE;
+	public final static int FRAME_MAX_BARCODES = Pixy2.PIXY_BUFFERSIZE / FRAME_BARCODE_SIZE;
+
+	// One bucket per sigmap bit, signatures 1-7 and color codes
+	public final static int FRAME_SIGNATURE_BUCKETS = 8;
+
+	// Frame contents
+	public final static int FRAME_BLOCKS = 0x01;
+	public final static int FRAME_LINE = 0x02;
+
+	long sequence = 0;
+	long timestamp = 0;
+	int contents = 0;
+
+	int blockCount = 0;
+	final int[] blockSignature = new int[FRAME_MAX_BLOCKS];
+	final int[] blockX = new int[FRAME_MAX_BLOCKS];
+	final int[] blockY = new int[FRAME_MAX_BLOCKS];
+	final int[] blockWidth = new int[FRAME_MAX_BLOCKS];
+	final int[] blockHeight = new int[FRAME_MAX_BLOCKS];
+	final int[] blockAngle = new int[FRAME_MAX_BLOCKS];
+	final int[] blockIndex = new int[FRAME_MAX_BLOCKS];
+	final int[] blockAge = new int[FRAME_MAX_BLOCKS];
+
+	// Block numbers grouped by signature bucket, largest first within each bucket
+	final int[] blockOrder = new int[FRAME_MAX_BLOCKS];
+	final int[] bucketStart = new int[FRAME_SIGNATURE_BUCKETS + 1];
+	private final int[] bucketFill = new int[FRAME_SIGNATURE_BUCKETS];
+	boolean indexed = false;
+
+	int lineFeatures = 0;
+
+	int vectorCount = 0;
+	final int[] vectorX0 = new int[FRAME_MAX_VECTORS];
+	final int[] vectorY0 = new int[FRAME_MAX_VECTORS];
+	final int[] vectorX1 = new int[FRAME_MAX_VECTORS];
+	final int[] vectorY1 = new int[FRAME_MAX_VECTORS];
+	final int[] vectorIndex = new int[FRAME_MAX_VECTORS];
+	final int[] vectorFlags = new int[FRAME_MAX_VECTORS];
+
+	int intersectionCount = 0;
+	final int[] intersectionX = new int[FRAME_MAX_INTERSECTIONS];
+	final int[] intersectionY = new int[FRAME_MAX_INTERSECTIONS];
+	final int[] intersectionNumber = new int[FRAME_MAX_INTERSECTIONS];
+	final int[] intersectionLineIndex = new int[FRAME_MAX_INTERSECTIONS * Pixy2Line.LINE_MAX_INTERSECTION_LINES];
+	final short[] intersectionLineAngle = new short[FRAME_MAX_INTERSECTIONS * Pixy2Line.LINE_MAX_INTERSECTION_LINES];
+
+	int barcodeCount = 0;
+	final int[] barcodeX = new int[FRAME_MAX_BARCODES];
+	final int[] barcodeY = new int[FRAME_MAX_BARCODES];
+	final int[] barcodeFlags = new int[FRAME_MAX_BARCODES];
+	final int[] barcodeCode = new int[FRAME_MAX_BARCODES];
+
+	/**
+	 * Copies contents of another frame into this frame
+	 * 
+	 * @param frame Frame to copy
+	 */
+	public void copyFrom(Pixy2Frame frame) {
+		sequence = frame.sequence;
+		timestamp = frame.timestamp;
+		contents = frame.contents;
+
+		int n = blockCount = frame.blockCount;
+		System.arraycopy(frame.blockSignature, 0, blockSignature, 0, n);
+		System.arraycopy(frame.blockX, 0, blockX, 0, n);
+		System.arraycopy(frame.blockY, 0, blockY, 0, n);
+		System.arraycopy(frame.blockWidth, 0, blockWidth, 0, n);
+		System.arraycopy(frame.blockHeight, 0, blockHeight, 0, n);
+		System.arraycopy(frame.blockAngle, 0, blockAngle, 0, n);
+		System.arraycopy(frame.blockIndex, 0, blockIndex, 0, n);
+		System.arraycopy(frame.blockAge, 0, blockAge, 0, n);
+		System.arraycopy(frame.blockOrder, 0, blockOrder, 0, n);
+		System.arraycopy(frame.bucketStart, 0, bucketStart, 0, FRAME_SIGNATURE_BUCKETS + 1);
+		indexed = frame.indexed;
+
+		lineFeatures = frame.lineFeatures;
+
+		n = vectorCount = frame.vectorCount;
+		System.arraycopy(frame.vectorX0, 0, vectorX0, 0, n);
+		System.arraycopy(frame.vectorY0, 0, vectorY0, 0, n);
+		System.arraycopy(frame.vectorX1, 0, vectorX1, 0, n);
+		System.arraycopy(frame.vectorY1, 0, vectorY1, 0, n);
+		System.arraycopy(frame.vectorIndex, 0, vectorIndex, 0, n);
+		System.arraycopy(frame.vectorFlags, 0, vectorFlags, 0, n);
+
+		n = intersectionCount = frame.intersectionCount;
+		System.arraycopy(frame.intersectionX, 0, intersectionX, 0, n);
+		System.arraycopy(frame.intersectionY, 0, intersectionY, 0, n);
+		System.arraycopy(frame.intersectionNumber, 0, intersectionNumber, 0, n);
+		System.arraycopy(frame.intersectionLineIndex, 0, intersectionLineIndex, 0,
+				n * Pixy2Line.LINE_MAX_INTERSECTION_LINES);
+		System.arraycopy(frame.intersectionLineAngle, 0, intersectionLineAngle, 0,
+				n * Pixy2Line.LINE_MAX_INTERSECTION_LINES);
+
+		n = barcodeCount = frame.barcodeCount;
+		System.arraycopy(frame.barcodeX, 0, barcodeX, 0, n);
+		System.arraycopy(frame.barcodeY, 0, barcodeY, 0, n);
+		System.arraycopy(frame.barcodeFlags, 0, barcodeFlags, 0, n);
+		System.arraycopy(frame.barcodeCode, 0, barcodeCode, 0, n);
+	}
+
+	/**
+	 * Clears all blocks and line features from frame
+	 */
+	public void clear() {
+		contents = 0;
+		blockCount = 0;
+		indexed = false;
+		lineFeatures = 0;
+		vectorCount = 0;
+		intersectionCount = 0;
+		barcodeCount = 0;
+	}
+
+	/**
+	 * Appends a block from another frame to this frame
+	 * 
+	 * @param frame Frame to copy block from
+	 * @param i     Block number in frame
+	 * 
+	 * @return Block number in this frame, or -1 if this frame is full
+	 */
+	public int copyBlock(Pixy2Frame frame, int i) {
+		int n = blockCount;
+		if (n >= FRAME_MAX_BLOCKS)
+			return -1;
+		blockSignature[n] = frame.blockSignature[i];
+		blockX[n] = frame.blockX[i];
+		blockY[n] = frame.blockY[i];
+		blockWidth[n] = frame.blockWidth[i];
+		blockHeight[n] = frame.blockHeight[i];
+		blockAngle[n] = frame.blockAngle[i];
+		blockIndex[n] = frame.blockIndex[i];
+		blockAge[n] = frame.blockAge[i];
+		blockCount = n + 1;
+		indexed = false;
+		contents |= FRAME_BLOCKS;
+		return n;
+	}
+
+	/**
+	 * Parses signature blocks from a blocks response
+	 * 
+	 * @param buffer Response payload
+	 * @param length Response payload length
+	 * 
+	 * @return Number of blocks parsed
+	 */
+	int parseBlocks(byte[] buffer, int length) {
+		int n = 0;
+		for (int i = 0; i + FRAME_BLOCK_SIZE <= length && n < FRAME_MAX_BLOCKS; i += FRAME_BLOCK_SIZE, n++) {
+			blockSignature[n] = ((buffer[i + 1] & 0xff) << 8) | (buffer[i] & 0xff);
+			blockX[n] = ((buffer[i + 3] & 0xff) << 8) | (buffer[i + 2] & 0xff);
+			blockY[n] = ((buffer[i + 5] & 0xff) << 8) | (buffer[i + 4] & 0xff);
+			blockWidth[n] = ((buffer[i + 7] & 0xff) << 8) | (buffer[i + 6] & 0xff);
+			blockHeight[n] = ((buffer[i + 9] & 0xff) << 8) | (buffer[i + 8] & 0xff);
+			blockAngle[n] = (short) (((buffer[i + 11] & 0xff) << 8) | (buffer[i + 10] & 0xff));
+			blockIndex[n] = buffer[i + 12] & 0xff;
+			blockAge[n] = buffer[i + 13] & 0xff;
+		}
+		blockCount = n;
+		contents |= FRAME_BLOCKS;
+		indexBlocks();
+		return n;
+	}
+
+	/**
+	 * Groups blocks by signature bucket, sorting each bucket largest first
+	 */
+	void indexBlocks() {
+		int[] start = bucketStart;
+		int[] fill = bucketFill;
+		for (int b = 0; b <= FRAME_SIGNATURE_BUCKETS; b++)
+			start[b] = 0;
+		for (int i = 0; i < blockCount; i++) {
+			int b = getBucket(blockSignature[i]);
+			if (b >= 0)
+				start[b + 1]++;
+		}
+		for (int b = 0; b < FRAME_SIGNATURE_BUCKETS; b++) {
+			start[b + 1] += start[b];
+			fill[b] = start[b];
+		}
+		// blocks arrive roughly largest first, so insertion sort is cheap
+		for (int i = 0; i < blockCount; i++) {
+			int b = getBucket(blockSignature[i]);
+			if (b < 0)
+				continue;
+			int a = blockWidth[i] * blockHeight[i];
+			int j = fill[b]++;
+			for (; j > start[b]; j--) {
+				int prev = blockOrder[j - 1];
+				if (blockWidth[prev] * blockHeight[prev] >= a)
+					break;
+				blockOrder[j] = prev;
+			}
+			blockOrder[j] = i;
+		}
+		indexed = true;
+	}
+
+	/**
+	 * Gets signature bucket of a block signature
+	 * 
+	 * @param signature Block signature
+	 * 
+	 * @return Bucket, or -1 if signature is invalid
+	 */
+	private static int getBucket(int signature) {
+		int bit = Pixy2CCC.getSigmapBit(signature);
+		return bit == 0 ? -1 : Integer.numberOfTrailingZeros(bit);
+	}
+
+	/**
+	 * Parses line features from a line features response
+	 * 
+	 * @param buffer Response payload
+	 * @param length Response payload length
+	 * 
+	 * @return Bitmask of features parsed
+	 */
+	int parseFeatures(byte[] buffer, int length) {
+		int res = 0;
+		vectorCount = 0;
+		intersectionCount = 0;
+		barcodeCount = 0;
+		for (int offset = 0, fsize; offset + 2 <= length; offset += fsize + 2) {
+			int ftype = buffer[offset];
+			fsize = buffer[offset + 1] & 0xff;
+			int data = offset + 2;
+			int end = Math.min(data + fsize, length);
+			if (ftype == Pixy2Line.LINE_VECTOR) {
+				int n = 0;
+				for (int i = data; i + FRAME_VECTOR_SIZE <= end && n < FRAME_MAX_VECTORS; i += FRAME_VECTOR_SIZE, n++) {
+					vectorX0[n] = buffer[i] & 0xff;
+					vectorY0[n] = buffer[i + 1] & 0xff;
+					vectorX1[n] = buffer[i + 2] & 0xff;
+					vectorY1[n] = buffer[i + 3] & 0xff;
+					vectorIndex[n] = buffer[i + 4] & 0xff;
+					vectorFlags[n] = buffer[i + 5] & 0xff;
+				}
+				vectorCount = n;
+				res |= Pixy2Line.LINE_VECTOR;
+			} else if (ftype == Pixy2Line.LINE_INTERSECTION) {
+				int n = 0;
+				for (int i = data; i + FRAME_INTERSECTION_SIZE <= end
+						&& n < FRAME_MAX_INTERSECTIONS; i += FRAME_INTERSECTION_SIZE, n++) {
+					intersectionX[n] = buffer[i] & 0xff;
+					intersectionY[n] = buffer[i + 1] & 0xff;
+					intersectionNumber[n] = buffer[i + 2] & 0xff;
+					for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++) {
+						int line = i + 4 + (4 * l);
+						intersectionLineIndex[n * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l] = buffer[line];
+						intersectionLineAngle[n * Pixy2Line.LINE_MAX_INTERSECTION_LINES
+								+ l] = (short) (((buffer[line + 3] & 0xff) << 8) | (buffer[line + 2] & 0xff));
+					}
+				}
+				intersectionCount = n;
+				res |= Pixy2Line.LINE_INTERSECTION;
+			} else if (ftype == Pixy2Line.LINE_BARCODE) {
+				int n = 0;
+				for (int i = data; i + FRAME_BARCODE_SIZE <= end
+						&& n < FRAME_MAX_BARCODES; i += FRAME_BARCODE_SIZE, n++) {
+					barcodeX[n] = buffer[i] & 0xff;
+					barcodeY[n] = buffer[i + 1] & 0xff;
+					barcodeFlags[n] = buffer[i + 2] & 0xff;
+					barcodeCode[n] = buffer[i + 3] & 0xff;
+				}
+				barcodeCount = n;
+				res |= Pixy2Line.LINE_BARCODE;
+			} else
+				break; // parse error
+		}
+		lineFeatures = res;
+		contents |= FRAME_LINE;
+		return res;
+	}
+
+	/**
+	 * @return Frame sequence number, incremented for every frame polled
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return Time frame was received in {@link System#nanoTime()} units
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets number of blocks with a signature
+	 * 
+	 * @param signature Block signature, any color code signature counts all color
+	 *                  codes
+	 * 
+	 * @return Number of blocks
+	 */
+	public int getSignatureCount(int signature) {
+		int b = getBucket(signature);
+		if (b < 0)
+			return 0;
+		if (!indexed)
+			indexBlocks();
+		return bucketStart[b + 1] - bucketStart[b];
+	}
+
+	/**
+	 * Gets block with a signature by size
+	 * 
+	 * @param signature Block signature, any color code signature selects all
+	 *                  color codes
+	 * @param k         Size rank, 0 for the largest block
+	 * 
+	 * @return Block number, or -1 if there are not that many blocks
+	 */
+	public int getSignatureBlock(int signature, int k) {
+		int b = getBucket(signature);
+		if (b < 0 || k < 0)
+			return -1;
+		if (!indexed)
+			indexBlocks();
+		int i = bucketStart[b] + k;
+		return i < bucketStart[b + 1] ? blockOrder[i] : -1;
+	}
+
+	/**
+	 * Gets largest block with a signature
+	 * 
+	 * @param signature Block signature, any color code signature selects all
+	 *                  color codes
+	 * 
+	 * @return Block number, or -1 if there are no blocks with the signature
+	 */
+	public int getLargestBlock(int signature) {
+		return getSignatureBlock(signature, 0);
+	}
+
+	/**
+	 * @return Number of color code blocks
+	 */
+	public int getColorCodeCount() {
+		return getSignatureCount(Pixy2CCC.CCC_MAX_SIGNATURE + 1);
+	}
+
+	/**
+	 * Gets color code block by size
+	 * 
+	 * @param k Size rank, 0 for the largest color code block
+	 * 
+	 * @return Block number, or -1 if there are not that many color code blocks
+	 */
+	public int getColorCodeBlock(int k) {
+		return getSignatureBlock(Pixy2CCC.CCC_MAX_SIGNATURE + 1, k);
+	}
+
+	/**
+	 * @return Bitmask of {@link #FRAME_BLOCKS} and {@link #FRAME_LINE} for data
+	 *         present in frame
+	 */
+	public int getContents() {
+		return contents;
+	}
+
+	/**
+	 * @return Number of signature blocks
+	 */
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block signature
+	 */
+	public int getBlockSignature(int i) {
+		return blockSignature[i];
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block X value
+	 */
+	public int getBlockX(int i) {
+		return blockX[i];
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block Y value
+	 */
+	public int getBlockY(int i) {
+		return blockY[i];
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block width
+	 */
+	public int getBlockWidth(int i) {
+		return blockWidth[i];
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block height
+	 */
+	public int getBlockHeight(int i) {
+		return blockHeight[i];
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block angle from camera
+	 */
+	public int getBlockAngle(int i) {
+		return blockAngle[i];
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block tracking index
+	 */
+	public int getBlockIndex(int i) {
+		return blockIndex[i];
+	}
+
+	/**
+	 * @param i Block number
+	 * 
+	 * @return Block age in frames
+	 */
+	public int getBlockAge(int i) {
+		return blockAge[i];
+	}
+
+	/**
+	 * @return Bitmask of line features present
+	 */
+	public int getLineFeatures() {
+		return lineFeatures;
+	}
+
+	/**
+	 * @return Number of line vectors
+	 */
+	public int getVectorCount() {
+		return vectorCount;
+	}
+
+	/**
+	 * @param i Vector number
+	 * 
+	 * @return Vector X0 value
+	 */
+	public int getVectorX0(int i) {
+		return vectorX0[i];
+	}
+
+	/**
+	 * @param i Vector number
+	 * 
+	 * @return Vector Y0 value
+	 */
+	public int getVectorY0(int i) {
+		return vectorY0[i];
+	}
+
+	/**
+	 * @param i Vector number
+	 * 
+	 * @return Vector X1 value
+	 */
+	public int getVectorX1(int i) {
+		return vectorX1[i];
+	}
+
+	/**
+	 * @param i Vector number
+	 * 
+	 * @return Vector Y1 value
+	 */
+	public int getVectorY1(int i) {
+		return vectorY1[i];
+	}
+
+	/**
+	 * @param i Vector number
+	 * 
+	 * @return Vector index
+	 */
+	public int getVectorIndex(int i) {
+		return vectorIndex[i];
+	}
+
+	/**
+	 * @param i Vector number
+	 * 
+	 * @return Vector flags
+	 */
+	public int getVectorFlags(int i) {
+		return vectorFlags[i];
+	}
+
+	/**
+	 * @return Number of intersections
+	 */
+	public int getIntersectionCount() {
+		return intersectionCount;
+	}
+
+	/**
+	 * @param i Intersection number
+	 * 
+	 * @return Intersection X value
+	 */
+	public int getIntersectionX(int i) {
+		return intersectionX[i];
+	}
+
+	/**
+	 * @param i Intersection number
+	 * 
+	 * @return Intersection Y value
+	 */
+	public int getIntersectionY(int i) {
+		return intersectionY[i];
+	}
+
+	/**
+	 * @param i Intersection number
+	 * 
+	 * @return Number of lines in intersection
+	 */
+	public int getIntersectionNumber(int i) {
+		return intersectionNumber[i];
+	}
+
+	/**
+	 * @param i Intersection number
+	 * @param l Line number
+	 * 
+	 * @return Index of intersection line
+	 */
+	public int getIntersectionLineIndex(int i, int l) {
+		return intersectionLineIndex[i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l];
+	}
+
+	/**
+	 * @param i Intersection number
+	 * @param l Line number
+	 * 
+	 * @return Angle of intersection line
+	 */
+	public short getIntersectionLineAngle(int i, int l) {
+		return intersectionLineAngle[i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l];
+	}
+
+	/**
+	 * @return Number of barcodes
+	 */
+	public int getBarcodeCount() {
+		return barcodeCount;
+	}
+
+	/**
+	 * @param i Barcode number
+	 * 
+	 * @return Barcode X value
+	 */
+	public int getBarcodeX(int i) {
+		return barcodeX[i];
+	}
+
+	/**
+	 * @param i Barcode number
+	 * 
+	 * @return Barcode Y value
+	 */
+	public int getBarcodeY(int i) {
+		return barcodeY[i];
+	}
+
+	/**
+	 * @param i Barcode number
+	 * 
+	 * @return Barcode flags
+	 */
+	public int getBarcodeFlags(int i) {
+		return barcodeFlags[i];
+	}
+
+	/**
+	 * @param i Barcode number
+	 * 
+	 * @return Barcode code
+	 */
+	public int getBarcodeCode(int i) {
+		return barcodeCode[i];
+	}
+
+}
@@ -0,0 +1,67 @@
+package pseudoresonance.pixy2api;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Single-writer latest frame holder with lock-free reads
+ * 
+ * The writer copies each new frame in under a write stamp. Readers copy it out
+ * with optimistic reads and retry if a write happened meanwhile, so readers
+ * never block the writer and a slow reader can never see a torn frame.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2FrameBuffer {
+
+	private final Pixy2Frame latest = new Pixy2Frame();
+	private final StampedLock lock = new StampedLock();
+
+	private volatile long sequence = 0;
+
+	/**
+	 * Publishes frame as the latest frame. Must only be called by one thread.
+	 * 
+	 * @param frame Frame to publish
+	 */
+	public void publish(Pixy2Frame frame) {
+		long stamp = lock.writeLock();
+		try {
+			latest.copyFrom(frame);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		sequence = frame.sequence;
+	}
+
+	/**
+	 * Copies the latest frame without blocking the writer
+	 * 
+	 * @param dest Frame to copy into
+	 * 
+	 * @return Whether a frame has been published yet
+	 */
+	public boolean read(Pixy2Frame dest) {
+		while (true) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				dest.copyFrom(latest);
+				if (lock.validate(stamp))
+					return dest.sequence != 0;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return Sequence number of the latest frame, or 0 if none published
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+}
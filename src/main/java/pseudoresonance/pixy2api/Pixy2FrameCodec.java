@@ -0,0 +1,488 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Compact binary encoding of frames for streaming and logging
+ * 
+ * Frames are encoded as variable length integers, most of them as deltas
+ * against the previous frame of the stream. Blocks and vectors are matched to
+ * the previous frame by their Pixy2 tracking index, and a change mask byte
+ * says which of their fields changed, so a target that didn't move costs 2
+ * bytes instead of Pixy2's 14. Intersections and barcodes have no tracking
+ * index and are encoded as plain variable length integers.
+ * 
+ * A keyframe doesn't depend on any earlier frame. A delta frame names the
+ * sequence number of the frame it was encoded against, and can only be
+ * decoded if that was the last frame decoded, so after a lost or reordered
+ * message decoding fails with {@link #CODEC_RESULT_NO_REFERENCE} until the
+ * next keyframe. The encoder sends a keyframe every
+ * {@link #setKeyframeInterval(int)} frames, or on request.
+ * 
+ * A codec keeps the reference frame of one stream direction, so use one codec
+ * to encode and a separate one to decode. Neither allocates after
+ * construction.
+ * 
+ * Layout: flags byte, sequence, sequence delta to reference (delta frames
+ * only), timestamp delta to reference, then blocks (count, then index, change
+ * mask and changed fields of each) and line features (feature bitmask, vector
+ * count, then index, change mask and changed fields of each, intersections,
+ * barcodes), each present only if the frame contains it.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2FrameCodec {
+	public final static int CODEC_DEFAULT_KEYFRAME_INTERVAL = 30;
+
+	// Upper bound of an encoded frame, enough for every frame Pixy2 can send
+	public final static int CODEC_MAX_SIZE = 2048;
+
+	// Flags
+	public final static int CODEC_KEYFRAME = 0x01;
+	public final static int CODEC_BLOCKS = 0x02;
+	public final static int CODEC_LINE = 0x04;
+
+	// Result codes
+	public final static int CODEC_RESULT_NO_REFERENCE = -16;
+
+	// Worst case encoded item sizes
+	private final static int HEADER_SIZE = 1 + 10 + 10 + 10;
+	private final static int BLOCK_SIZE = 2 + 7 * 3;
+	private final static int VECTOR_SIZE = 2 + 5 * 2;
+	private final static int INTERSECTION_SIZE = 3 * 2 + Pixy2Line.LINE_MAX_INTERSECTION_LINES * (2 + 3);
+	private final static int BARCODE_SIZE = 4 * 2;
+
+	private final Pixy2Frame reference = new Pixy2Frame();
+	private boolean hasReference = false;
+
+	// slot + 1 of reference block and vector by tracking index, 0 if none
+	private final int[] blockSlot = new int[256];
+	private final int[] vectorSlot = new int[256];
+
+	private int keyframeInterval = CODEC_DEFAULT_KEYFRAME_INTERVAL;
+	private int sinceKeyframe = 0;
+	private boolean keyframeRequested = false;
+
+	private byte[] buffer;
+	private int position, limit;
+	private boolean overrun;
+
+	/**
+	 * Sets how often the encoder sends a keyframe
+	 * 
+	 * @param interval Frames per keyframe, 1 to only send keyframes
+	 */
+	public void setKeyframeInterval(int interval) {
+		this.keyframeInterval = Math.max(interval, 1);
+	}
+
+	/**
+	 * Makes the encoder send a keyframe next, such as when a receiver reports
+	 * {@link #CODEC_RESULT_NO_REFERENCE}
+	 */
+	public void requestKeyframe() {
+		keyframeRequested = true;
+	}
+
+	/**
+	 * Forgets the reference frame, so only a keyframe can be encoded or decoded
+	 * next
+	 */
+	public void reset() {
+		hasReference = false;
+		reference.clear();
+		reference.sequence = 0;
+		reference.timestamp = 0;
+		index();
+	}
+
+	/**
+	 * @return Sequence number of the reference frame, the last frame encoded or
+	 *         decoded, or 0 if there is none
+	 */
+	public long getReferenceSequence() {
+		return hasReference ? reference.sequence : 0;
+	}
+
+	/**
+	 * Encodes frame, as a delta against the last frame encoded unless a keyframe
+	 * is due
+	 * 
+	 * @param frame  Frame to encode
+	 * @param dest   Buffer to encode into
+	 * @param offset Offset in buffer
+	 * 
+	 * @return Number of bytes written, or {@link Pixy2#PIXY_RESULT_ERROR} if the
+	 *         buffer is too small
+	 */
+	public int encode(Pixy2Frame frame, byte[] dest, int offset) {
+		boolean keyframe = !hasReference || keyframeRequested || sinceKeyframe + 1 >= keyframeInterval
+				|| frame.sequence <= reference.sequence;
+		if (keyframe) {
+			hasReference = false;
+			reference.clear();
+			index();
+		}
+		buffer = dest;
+		position = offset;
+		limit = dest.length;
+		if (!ensure(HEADER_SIZE))
+			return Pixy2.PIXY_RESULT_ERROR;
+
+		boolean blocks = (frame.contents & Pixy2Frame.FRAME_BLOCKS) != 0;
+		boolean line = (frame.contents & Pixy2Frame.FRAME_LINE) != 0;
+		dest[position++] = (byte) ((keyframe ? CODEC_KEYFRAME : 0) | (blocks ? CODEC_BLOCKS : 0)
+				| (line ? CODEC_LINE : 0));
+		writeVarint(frame.sequence);
+		if (!keyframe)
+			writeVarint(frame.sequence - reference.sequence);
+		writeSigned(frame.timestamp - (keyframe ? 0 : reference.timestamp));
+
+		if (blocks) {
+			writeVarint(frame.blockCount);
+			for (int i = 0; i < frame.blockCount; i++) {
+				if (!ensure(BLOCK_SIZE))
+					return Pixy2.PIXY_RESULT_ERROR;
+				int r = blockSlot[frame.blockIndex[i] & 0xff] - 1;
+				int mask = 0;
+				mask |= changed(frame.blockSignature[i], r < 0 ? 0 : reference.blockSignature[r], 0x01);
+				mask |= changed(frame.blockX[i], r < 0 ? 0 : reference.blockX[r], 0x02);
+				mask |= changed(frame.blockY[i], r < 0 ? 0 : reference.blockY[r], 0x04);
+				mask |= changed(frame.blockWidth[i], r < 0 ? 0 : reference.blockWidth[r], 0x08);
+				mask |= changed(frame.blockHeight[i], r < 0 ? 0 : reference.blockHeight[r], 0x10);
+				mask |= changed(frame.blockAngle[i], r < 0 ? 0 : reference.blockAngle[r], 0x20);
+				mask |= changed(frame.blockAge[i], r < 0 ? 0 : reference.blockAge[r], 0x40);
+				dest[position++] = (byte) frame.blockIndex[i];
+				dest[position++] = (byte) mask;
+				if ((mask & 0x01) != 0)
+					writeSigned(frame.blockSignature[i] - (r < 0 ? 0 : reference.blockSignature[r]));
+				if ((mask & 0x02) != 0)
+					writeSigned(frame.blockX[i] - (r < 0 ? 0 : reference.blockX[r]));
+				if ((mask & 0x04) != 0)
+					writeSigned(frame.blockY[i] - (r < 0 ? 0 : reference.blockY[r]));
+				if ((mask & 0x08) != 0)
+					writeSigned(frame.blockWidth[i] - (r < 0 ? 0 : reference.blockWidth[r]));
+				if ((mask & 0x10) != 0)
+					writeSigned(frame.blockHeight[i] - (r < 0 ? 0 : reference.blockHeight[r]));
+				if ((mask & 0x20) != 0)
+					writeSigned(frame.blockAngle[i] - (r < 0 ? 0 : reference.blockAngle[r]));
+				if ((mask & 0x40) != 0)
+					writeSigned(frame.blockAge[i] - (r < 0 ? 0 : reference.blockAge[r]));
+			}
+		}
+
+		if (line) {
+			if (!ensure(1 + 5))
+				return Pixy2.PIXY_RESULT_ERROR;
+			dest[position++] = (byte) frame.lineFeatures;
+			writeVarint(frame.vectorCount);
+			for (int i = 0; i < frame.vectorCount; i++) {
+				if (!ensure(VECTOR_SIZE))
+					return Pixy2.PIXY_RESULT_ERROR;
+				int r = vectorSlot[frame.vectorIndex[i] & 0xff] - 1;
+				int mask = 0;
+				mask |= changed(frame.vectorX0[i], r < 0 ? 0 : reference.vectorX0[r], 0x01);
+				mask |= changed(frame.vectorY0[i], r < 0 ? 0 : reference.vectorY0[r], 0x02);
+				mask |= changed(frame.vectorX1[i], r < 0 ? 0 : reference.vectorX1[r], 0x04);
+				mask |= changed(frame.vectorY1[i], r < 0 ? 0 : reference.vectorY1[r], 0x08);
+				mask |= changed(frame.vectorFlags[i], r < 0 ? 0 : reference.vectorFlags[r], 0x10);
+				dest[position++] = (byte) frame.vectorIndex[i];
+				dest[position++] = (byte) mask;
+				if ((mask & 0x01) != 0)
+					writeSigned(frame.vectorX0[i] - (r < 0 ? 0 : reference.vectorX0[r]));
+				if ((mask & 0x02) != 0)
+					writeSigned(frame.vectorY0[i] - (r < 0 ? 0 : reference.vectorY0[r]));
+				if ((mask & 0x04) != 0)
+					writeSigned(frame.vectorX1[i] - (r < 0 ? 0 : reference.vectorX1[r]));
+				if ((mask & 0x08) != 0)
+					writeSigned(frame.vectorY1[i] - (r < 0 ? 0 : reference.vectorY1[r]));
+				if ((mask & 0x10) != 0)
+					writeSigned(frame.vectorFlags[i] - (r < 0 ? 0 : reference.vectorFlags[r]));
+			}
+			if (!ensure(5))
+				return Pixy2.PIXY_RESULT_ERROR;
+			writeVarint(frame.intersectionCount);
+			for (int i = 0; i < frame.intersectionCount; i++) {
+				if (!ensure(INTERSECTION_SIZE))
+					return Pixy2.PIXY_RESULT_ERROR;
+				writeVarint(frame.intersectionX[i]);
+				writeVarint(frame.intersectionY[i]);
+				writeVarint(frame.intersectionNumber[i]);
+				for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++) {
+					int k = i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l;
+					writeSigned(frame.intersectionLineIndex[k]);
+					writeSigned(frame.intersectionLineAngle[k]);
+				}
+			}
+			if (!ensure(5))
+				return Pixy2.PIXY_RESULT_ERROR;
+			writeVarint(frame.barcodeCount);
+			for (int i = 0; i < frame.barcodeCount; i++) {
+				if (!ensure(BARCODE_SIZE))
+					return Pixy2.PIXY_RESULT_ERROR;
+				writeVarint(frame.barcodeX[i]);
+				writeVarint(frame.barcodeY[i]);
+				writeVarint(frame.barcodeFlags[i]);
+				writeVarint(frame.barcodeCode[i]);
+			}
+		}
+
+		buffer = null;
+		reference.copyFrom(frame);
+		hasReference = true;
+		index();
+		sinceKeyframe = keyframe ? 0 : sinceKeyframe + 1;
+		keyframeRequested = false;
+		return position - offset;
+	}
+
+	/**
+	 * Decodes frame encoded by another codec. On success the decoded frame
+	 * becomes the reference for the next delta frame.
+	 * 
+	 * @param src    Buffer to decode from
+	 * @param offset Offset in buffer
+	 * @param length Length of encoded frame
+	 * @param dest   Frame to decode into
+	 * 
+	 * @return Number of bytes read, {@link #CODEC_RESULT_NO_REFERENCE} if it is a
+	 *         delta frame against a frame that wasn't the last one decoded, or
+	 *         {@link Pixy2#PIXY_RESULT_ERROR} if it is malformed
+	 */
+	public int decode(byte[] src, int offset, int length, Pixy2Frame dest) {
+		buffer = src;
+		position = offset;
+		limit = Math.min(offset + length, src.length);
+		overrun = false;
+		if (position >= limit)
+			return Pixy2.PIXY_RESULT_ERROR;
+
+		int flags = src[position++];
+		boolean keyframe = (flags & CODEC_KEYFRAME) != 0;
+		long sequence = readVarint();
+		if (!keyframe) {
+			long delta = readVarint();
+			if (!hasReference || sequence - delta != reference.sequence)
+				return CODEC_RESULT_NO_REFERENCE;
+		} else {
+			hasReference = false;
+			reference.clear();
+			index();
+		}
+		long timestamp = readSigned() + (keyframe ? 0 : reference.timestamp);
+
+		dest.clear();
+		dest.sequence = sequence;
+		dest.timestamp = timestamp;
+
+		if ((flags & CODEC_BLOCKS) != 0) {
+			int n = (int) readVarint();
+			if (n > Pixy2Frame.FRAME_MAX_BLOCKS)
+				return Pixy2.PIXY_RESULT_ERROR;
+			for (int i = 0; i < n && !overrun; i++) {
+				int index = readByte();
+				int mask = readByte();
+				int r = blockSlot[index] - 1;
+				dest.blockIndex[i] = index;
+				dest.blockSignature[i] = (r < 0 ? 0 : reference.blockSignature[r])
+						+ ((mask & 0x01) != 0 ? (int) readSigned() : 0);
+				dest.blockX[i] = (r < 0 ? 0 : reference.blockX[r]) + ((mask & 0x02) != 0 ? (int) readSigned() : 0);
+				dest.blockY[i] = (r < 0 ? 0 : reference.blockY[r]) + ((mask & 0x04) != 0 ? (int) readSigned() : 0);
+				dest.blockWidth[i] = (r < 0 ? 0 : reference.blockWidth[r])
+						+ ((mask & 0x08) != 0 ? (int) readSigned() : 0);
+				dest.blockHeight[i] = (r < 0 ? 0 : reference.blockHeight[r])
+						+ ((mask & 0x10) != 0 ? (int) readSigned() : 0);
+				dest.blockAngle[i] = (r < 0 ? 0 : reference.blockAngle[r])
+						+ ((mask & 0x20) != 0 ? (int) readSigned() : 0);
+				dest.blockAge[i] = (r < 0 ? 0 : reference.blockAge[r]) + ((mask & 0x40) != 0 ? (int) readSigned() : 0);
+			}
+			dest.blockCount = n;
+			dest.contents |= Pixy2Frame.FRAME_BLOCKS;
+			dest.indexBlocks();
+		}
+
+		if ((flags & CODEC_LINE) != 0) {
+			dest.lineFeatures = readByte();
+			int n = (int) readVarint();
+			if (n > Pixy2Frame.FRAME_MAX_VECTORS)
+				return Pixy2.PIXY_RESULT_ERROR;
+			for (int i = 0; i < n && !overrun; i++) {
+				int index = readByte();
+				int mask = readByte();
+				int r = vectorSlot[index] - 1;
+				dest.vectorIndex[i] = index;
+				dest.vectorX0[i] = (r < 0 ? 0 : reference.vectorX0[r]) + ((mask & 0x01) != 0 ? (int) readSigned() : 0);
+				dest.vectorY0[i] = (r < 0 ? 0 : reference.vectorY0[r]) + ((mask & 0x02) != 0 ? (int) readSigned() : 0);
+				dest.vectorX1[i] = (r < 0 ? 0 : reference.vectorX1[r]) + ((mask & 0x04) != 0 ? (int) readSigned() : 0);
+				dest.vectorY1[i] = (r < 0 ? 0 : reference.vectorY1[r]) + ((mask & 0x08) != 0 ? (int) readSigned() : 0);
+				dest.vectorFlags[i] = (r < 0 ? 0 : reference.vectorFlags[r])
+						+ ((mask & 0x10) != 0 ? (int) readSigned() : 0);
+			}
+			dest.vectorCount = n;
+			n = (int) readVarint();
+			if (n > Pixy2Frame.FRAME_MAX_INTERSECTIONS)
+				return Pixy2.PIXY_RESULT_ERROR;
+			for (int i = 0; i < n && !overrun; i++) {
+				dest.intersectionX[i] = (int) readVarint();
+				dest.intersectionY[i] = (int) readVarint();
+				dest.intersectionNumber[i] = (int) readVarint();
+				for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++) {
+					int k = i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l;
+					dest.intersectionLineIndex[k] = (int) readSigned();
+					dest.intersectionLineAngle[k] = (short) readSigned();
+				}
+			}
+			dest.intersectionCount = n;
+			n = (int) readVarint();
+			if (n > Pixy2Frame.FRAME_MAX_BARCODES)
+				return Pixy2.PIXY_RESULT_ERROR;
+			for (int i = 0; i < n && !overrun; i++) {
+				dest.barcodeX[i] = (int) readVarint();
+				dest.barcodeY[i] = (int) readVarint();
+				dest.barcodeFlags[i] = (int) readVarint();
+				dest.barcodeCode[i] = (int) readVarint();
+			}
+			dest.barcodeCount = n;
+			dest.contents |= Pixy2Frame.FRAME_LINE;
+		}
+
+		buffer = null;
+		if (overrun)
+			return Pixy2.PIXY_RESULT_ERROR;
+		reference.copyFrom(dest);
+		hasReference = true;
+		index();
+		return position - offset;
+	}
+
+	/**
+	 * Reads sequence number of an encoded frame without decoding it, such as to
+	 * drop stale frames before they replace the reference frame
+	 * 
+	 * @param src    Buffer to read from
+	 * @param offset Offset in buffer
+	 * @param length Length of encoded frame
+	 * 
+	 * @return Sequence number, or -1 if it is malformed
+	 */
+	public static long getSequence(byte[] src, int offset, int length) {
+		int end = Math.min(offset + length, src.length);
+		long value = 0;
+		for (int i = offset + 1, shift = 0; i < end && shift < 64; i++, shift += 7) {
+			value |= (long) (src[i] & 0x7f) << shift;
+			if ((src[i] & 0x80) == 0)
+				return value;
+		}
+		return -1;
+	}
+
+	/**
+	 * Rebuilds tracking index lookups of the reference frame
+	 */
+	private void index() {
+		for (int i = 0; i < 256; i++) {
+			blockSlot[i] = 0;
+			vectorSlot[i] = 0;
+		}
+		for (int i = 0; i < reference.blockCount; i++)
+			blockSlot[reference.blockIndex[i] & 0xff] = i + 1;
+		for (int i = 0; i < reference.vectorCount; i++)
+			vectorSlot[reference.vectorIndex[i] & 0xff] = i + 1;
+	}
+
+	/**
+	 * Gets change mask bit of a field
+	 * 
+	 * @param value     Field value
+	 * @param reference Field value in reference
+	 * @param bit       Mask bit of field
+	 * 
+	 * @return Mask bit if value changed, otherwise 0
+	 */
+	private static int changed(int value, int reference, int bit) {
+		return value != reference ? bit : 0;
+	}
+
+	/**
+	 * Checks that the buffer has room for more bytes
+	 * 
+	 * @param size Number of bytes
+	 * 
+	 * @return Whether they fit
+	 */
+	private boolean ensure(int size) {
+		return position + size <= limit;
+	}
+
+	/**
+	 * Writes unsigned variable length integer, 7 bits per byte, least
+	 * significant first
+	 * 
+	 * @param value Value
+	 */
+	private void writeVarint(long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	/**
+	 * Writes signed variable length integer, zigzag encoded so small negative
+	 * values stay short
+	 * 
+	 * @param value Value
+	 */
+	private void writeSigned(long value) {
+		writeVarint((value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Reads byte, flagging overrun at the end of the buffer
+	 * 
+	 * @return Unsigned byte, or 0 on overrun
+	 */
+	private int readByte() {
+		if (position >= limit) {
+			overrun = true;
+			return 0;
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	/**
+	 * Reads unsigned variable length integer
+	 * 
+	 * @return Value, or 0 on overrun
+	 */
+	private long readVarint() {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (position >= limit) {
+				overrun = true;
+				return 0;
+			}
+			int b = buffer[position++];
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		overrun = true;
+		return 0;
+	}
+
+	/**
+	 * Reads signed variable length integer
+	 * 
+	 * @return Value, or 0 on overrun
+	 */
+	private long readSigned() {
+		long value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
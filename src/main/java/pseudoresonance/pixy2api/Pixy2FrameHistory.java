@@ -0,0 +1,228 @@
+package pseudoresonance.pixy2api;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Fixed-capacity history of timestamped frames
+ * 
+ * Keeps the most recent frames in a preallocated ring so the position of a
+ * target can be looked up at the time a gyro or encoder sample was taken.
+ * Frames are found by binary search on their timestamps, and blocks and line
+ * vectors are interpolated between the frames on either side of the requested
+ * time by their tracking index. Like {@link Pixy2FrameBuffer}, readers use
+ * optimistic reads and retry if a frame was recorded meanwhile, so they never
+ * block the writer.
+ * 
+ * Runs on the {@link Pixy2Poller} thread as a frame listener, or frames can be
+ * recorded directly with {@link #record(Pixy2Frame)} from one thread.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2FrameHistory implements Pixy2Poller.FrameListener {
+	public final static int HISTORY_DEFAULT_CAPACITY = 32;
+
+	private final Pixy2Frame[] frames;
+	private final StampedLock lock = new StampedLock();
+
+	private int next = 0;
+	private volatile int count = 0;
+
+	/**
+	 * Constructs frame history holding {@link #HISTORY_DEFAULT_CAPACITY} frames
+	 */
+	public Pixy2FrameHistory() {
+		this(HISTORY_DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs frame history
+	 * 
+	 * @param capacity Number of frames to keep
+	 */
+	public Pixy2FrameHistory(int capacity) {
+		if (capacity < 2)
+			throw new IllegalArgumentException("Capacity must be at least 2");
+		frames = new Pixy2Frame[capacity];
+		for (int i = 0; i < capacity; i++)
+			frames[i] = new Pixy2Frame();
+	}
+
+	/**
+	 * Records new frame
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		record(frame);
+	}
+
+	/**
+	 * Records frame, replacing the oldest frame if full. Must only be called by
+	 * one thread, with increasing timestamps.
+	 * 
+	 * @param frame Frame to record
+	 */
+	public void record(Pixy2Frame frame) {
+		long stamp = lock.writeLock();
+		try {
+			frames[next].copyFrom(frame);
+			next = (next + 1) % frames.length;
+			if (count < frames.length)
+				count++;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Copies frame as it was at a given time. Blocks and line vectors seen in the
+	 * frames on both sides of the time are interpolated, everything else is taken
+	 * from the frame before. Times after the newest frame give the newest frame.
+	 * 
+	 * @param time Time in {@link System#nanoTime()} units
+	 * @param dest Frame to copy into, with its timestamp set to the time
+	 * 
+	 * @return Whether the history reaches back to the time
+	 */
+	public boolean getFrame(long time, Pixy2Frame dest) {
+		while (true) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				boolean found = find(time, dest);
+				if (lock.validate(stamp))
+					return found;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Copies newest frame captured at or before a given time, without
+	 * interpolating
+	 * 
+	 * @param time Time in {@link System#nanoTime()} units
+	 * @param dest Frame to copy into
+	 * 
+	 * @return Whether the history reaches back to the time
+	 */
+	public boolean getFrameBefore(long time, Pixy2Frame dest) {
+		while (true) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				int slot = search(time);
+				if (slot >= 0)
+					dest.copyFrom(frames[slot]);
+				if (lock.validate(stamp))
+					return slot >= 0;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Binary searches for the newest frame captured at or before a time, must be
+	 * called in an optimistic read
+	 * 
+	 * @param time Time in {@link System#nanoTime()} units
+	 * 
+	 * @return Slot of frame, or -1 if all frames are newer
+	 */
+	private int search(long time) {
+		int n = count, cap = frames.length;
+		int oldest = (next - n + cap) % cap;
+		int lo = 0, hi = n - 1, found = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (frames[(oldest + mid) % cap].timestamp - time <= 0) {
+				found = mid;
+				lo = mid + 1;
+			} else
+				hi = mid - 1;
+		}
+		return found < 0 ? -1 : (oldest + found) % cap;
+	}
+
+	/**
+	 * Copies interpolated frame, must be called in an optimistic read
+	 * 
+	 * @param time Time in {@link System#nanoTime()} units
+	 * @param dest Frame to copy into
+	 * 
+	 * @return Whether the history reaches back to the time
+	 */
+	private boolean find(long time, Pixy2Frame dest) {
+		int slot = search(time);
+		if (slot < 0)
+			return false;
+		Pixy2Frame before = frames[slot];
+		dest.copyFrom(before);
+		int after = (slot + 1) % frames.length;
+		if (after == next)
+			return true; // newest frame
+		Pixy2Frame a = frames[after];
+		long span = a.timestamp - before.timestamp;
+		if (span <= 0)
+			return true;
+		double f = (double) (time - before.timestamp) / span;
+		dest.timestamp = time;
+
+		for (int i = 0; i < dest.blockCount; i++) {
+			for (int j = 0; j < a.blockCount; j++) {
+				if (a.blockIndex[j] == dest.blockIndex[i] && a.blockSignature[j] == dest.blockSignature[i]) {
+					dest.blockX[i] = lerp(dest.blockX[i], a.blockX[j], f);
+					dest.blockY[i] = lerp(dest.blockY[i], a.blockY[j], f);
+					dest.blockWidth[i] = lerp(dest.blockWidth[i], a.blockWidth[j], f);
+					dest.blockHeight[i] = lerp(dest.blockHeight[i], a.blockHeight[j], f);
+					break;
+				}
+			}
+		}
+		for (int i = 0; i < dest.vectorCount; i++) {
+			for (int j = 0; j < a.vectorCount; j++) {
+				if (a.vectorIndex[j] == dest.vectorIndex[i]) {
+					dest.vectorX0[i] = lerp(dest.vectorX0[i], a.vectorX0[j], f);
+					dest.vectorY0[i] = lerp(dest.vectorY0[i], a.vectorY0[j], f);
+					dest.vectorX1[i] = lerp(dest.vectorX1[i], a.vectorX1[j], f);
+					dest.vectorY1[i] = lerp(dest.vectorY1[i], a.vectorY1[j], f);
+					break;
+				}
+			}
+		}
+		dest.indexed = false; // areas may have changed order
+		return true;
+	}
+
+	/**
+	 * Interpolates between two positions
+	 * 
+	 * @param from Position before
+	 * @param to   Position after
+	 * @param f    Fraction of the way from before to after
+	 * 
+	 * @return Interpolated position
+	 */
+	private static int lerp(int from, int to, double f) {
+		return from + (int) Math.round((to - from) * f);
+	}
+
+	/**
+	 * @return Number of frames in history
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return Maximum number of frames kept
+	 */
+	public int getCapacity() {
+		return frames.length;
+	}
+
+}
@@ -0,0 +1,291 @@
+package pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Pushes new frames to subscribers with latest-only conflation
+ * 
+ * Fed by the {@link Pixy2Poller} thread as a frame listener. Each subscriber
+ * gets its own latest frame slot: the poller only copies the frame in and
+ * schedules delivery on an executor, so a slow subscriber never delays the
+ * poller or other subscribers. Frames that arrive while a subscriber is busy
+ * or hasn't requested more replace the undelivered one instead of queueing,
+ * so memory stays bounded and a subscriber always gets the newest frame when
+ * it is ready.
+ * 
+ * The frame passed to {@link Pixy2Flow.Subscriber#onNext(Object)} is reused
+ * for the next frame of that subscriber and must not be kept.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2FramePublisher implements Pixy2Flow.Publisher<Pixy2Frame>, Pixy2Poller.FrameListener {
+
+	private final Pixy2Poller poller;
+	private final int contents;
+	private final Executor executor;
+
+	private volatile FrameSubscription[] subscriptions = new FrameSubscription[0];
+	private boolean closed = false;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong subscriberErrors = new AtomicLong();
+
+	/**
+	 * Constructs publisher delivering on {@link ForkJoinPool#commonPool()}
+	 * 
+	 * @param poller   Poller to publish frames of
+	 * @param contents Frame contents to publish, {@link Pixy2Frame#FRAME_BLOCKS}
+	 *                 and/or {@link Pixy2Frame#FRAME_LINE}
+	 */
+	public Pixy2FramePublisher(Pixy2Poller poller, int contents) {
+		this(poller, contents, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs publisher
+	 * 
+	 * @param poller   Poller to publish frames of
+	 * @param contents Frame contents to publish, {@link Pixy2Frame#FRAME_BLOCKS}
+	 *                 and/or {@link Pixy2Frame#FRAME_LINE}
+	 * @param executor Executor to deliver frames on, such as a dedicated thread
+	 *                 pool for subscribers that block
+	 */
+	public Pixy2FramePublisher(Pixy2Poller poller, int contents, Executor executor) {
+		this.poller = poller;
+		this.contents = contents;
+		this.executor = executor;
+	}
+
+	/**
+	 * Adds subscriber. Subscribers added after {@link #close()} are completed
+	 * right away.
+	 * 
+	 * @param subscriber Subscriber
+	 */
+	@Override
+	public void subscribe(Pixy2Flow.Subscriber<? super Pixy2Frame> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("Subscriber must not be null");
+		FrameSubscription subscription = new FrameSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		synchronized (this) {
+			if (closed)
+				subscription.done = true;
+			else if (!subscription.cancelled.get()) {
+				FrameSubscription[] s = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+				s[s.length - 1] = subscription;
+				if (subscriptions.length == 0)
+					poller.addFrameListener(this);
+				subscriptions = s;
+			}
+		}
+		subscription.schedule();
+	}
+
+	/**
+	 * Removes cancelled subscription
+	 * 
+	 * @param subscription Subscription
+	 */
+	private synchronized void remove(FrameSubscription subscription) {
+		FrameSubscription[] s = subscriptions;
+		for (int i = 0; i < s.length; i++) {
+			if (s[i] == subscription) {
+				FrameSubscription[] r = Arrays.copyOf(s, s.length - 1);
+				System.arraycopy(s, i + 1, r, i, s.length - i - 1);
+				subscriptions = r;
+				if (r.length == 0)
+					poller.removeFrameListener(this);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Offers new frame to all subscribers, called on the poller thread
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & contents) == 0)
+			return;
+		for (FrameSubscription subscription : subscriptions)
+			subscription.offer(frame);
+	}
+
+	/**
+	 * Completes all subscribers and stops publishing
+	 */
+	public void close() {
+		FrameSubscription[] s;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			s = subscriptions;
+			subscriptions = new FrameSubscription[0];
+			if (s.length > 0)
+				poller.removeFrameListener(this);
+		}
+		for (FrameSubscription subscription : s) {
+			subscription.done = true;
+			subscription.schedule();
+		}
+	}
+
+	/**
+	 * @return Number of current subscribers
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.length;
+	}
+
+	/**
+	 * @return Number of frames replaced by a newer frame before a subscriber got
+	 *         them, over all subscribers
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return Number of subscriptions cancelled because onNext threw
+	 */
+	public long getSubscriberErrorCount() {
+		return subscriberErrors.get();
+	}
+
+	/**
+	 * Subscription with a latest frame slot, drained on the executor
+	 */
+	private final class FrameSubscription implements Pixy2Flow.Subscription, Runnable {
+		private final Pixy2Flow.Subscriber<? super Pixy2Frame> subscriber;
+
+		private final Pixy2FrameBuffer latest = new Pixy2FrameBuffer();
+		private final Pixy2Frame delivery = new Pixy2Frame();
+		private long lastSequence = -1;
+
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicBoolean pending = new AtomicBoolean();
+		private final AtomicBoolean cancelled = new AtomicBoolean();
+		// signals requested while draining, so only one thread signals at a time
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile boolean done = false;
+		private volatile Throwable error = null;
+
+		/**
+		 * Constructs subscription
+		 * 
+		 * @param subscriber Subscriber
+		 */
+		FrameSubscription(Pixy2Flow.Subscriber<? super Pixy2Frame> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		/**
+		 * Replaces undelivered frame, called on the poller thread
+		 * 
+		 * @param frame New frame
+		 */
+		void offer(Pixy2Frame frame) {
+			if (cancelled.get())
+				return;
+			latest.publish(frame);
+			if (pending.getAndSet(true))
+				dropped.incrementAndGet();
+			schedule();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0)
+				error = new IllegalArgumentException("Request must be positive, was " + n);
+			else {
+				long d, next;
+				do {
+					d = demand.get();
+					next = d + n < 0 ? Long.MAX_VALUE : d + n;
+				} while (!demand.compareAndSet(d, next));
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			if (cancelled.compareAndSet(false, true))
+				remove(this);
+		}
+
+		/**
+		 * Runs drain on the executor unless it is already running
+		 */
+		void schedule() {
+			if (wip.getAndIncrement() != 0)
+				return;
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				wip.set(0);
+				cancel();
+			}
+		}
+
+		/**
+		 * Delivers the latest frame if requested, then any terminal signal
+		 */
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * Delivers signals that are due
+		 */
+		private void drain() {
+			while (!cancelled.get() && demand.get() > 0 && pending.getAndSet(false)) {
+				latest.read(delivery);
+				if (delivery.sequence == lastSequence)
+					continue; // already delivered when its offer raced the last drain
+				lastSequence = delivery.sequence;
+				if (demand.get() != Long.MAX_VALUE)
+					demand.decrementAndGet();
+				try {
+					subscriber.onNext(delivery);
+				} catch (RuntimeException e) {
+					// report only the first, a resubscribing subscriber could flood the console
+					if (subscriberErrors.getAndIncrement() == 0)
+						e.printStackTrace();
+					cancel();
+				}
+			}
+			if (cancelled.get())
+				return;
+			Throwable e = error;
+			if (e != null) {
+				cancel();
+				subscriber.onError(e);
+			} else if (done) {
+				cancel();
+				subscriber.onComplete();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,272 @@
+package pseudoresonance.pixy2api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Receives frames streamed over UDP by a {@link Pixy2FrameSender}
+ * 
+ * Decodes datagrams on its own thread and publishes each frame for lock-free
+ * reads, with the same latest frame API as a local {@link Pixy2Poller}, so
+ * robot code can't tell whether Pixy2 is polled locally or on a coprocessor.
+ * Datagrams older than the latest frame are dropped. If a datagram was lost
+ * or reordered, the delta frames after it can't be decoded, so the receiver
+ * asks the sender for a keyframe and keeps the last good frame until then.
+ * Requests are repeated at most every
+ * {@link #RECEIVER_KEYFRAME_REQUEST_NANOS} while no keyframe arrives, so every
+ * undecodable delta frame doesn't cost the sender another keyframe.
+ * 
+ * Frame timestamps are converted to this host's {@link System#nanoTime()}
+ * using the smallest observed difference between the clocks, so they include
+ * the sender's latency but not the fastest network delivery time.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2FrameReceiver implements Runnable {
+	// How far the clock offset estimate may rise per datagram, to follow clock drift
+	public final static long RECEIVER_OFFSET_DRIFT_NANOS = 1000;
+	// Frames further behind the latest frame mean the sender restarted
+	public final static long RECEIVER_REORDER_WINDOW = 64;
+	// Shortest time between keyframe requests, enough for the keyframe to arrive
+	public final static long RECEIVER_KEYFRAME_REQUEST_NANOS = 50000000;
+
+	private final int port;
+	private final Pixy2FrameCodec codec = new Pixy2FrameCodec();
+
+	private final byte[] data = new byte[Pixy2FrameSender.STREAM_HEADER_SIZE + Pixy2FrameCodec.CODEC_MAX_SIZE];
+	private final ByteBuffer receiveBuffer = ByteBuffer.wrap(data);
+	private final ByteBuffer requestBuffer = ByteBuffer
+			.wrap(new byte[] { Pixy2FrameSender.STREAM_MAGIC, Pixy2FrameSender.STREAM_KEYFRAME_REQUEST });
+
+	private final Pixy2Frame work = new Pixy2Frame();
+	private final Pixy2FrameBuffer latest = new Pixy2FrameBuffer();
+
+	private long offset = Long.MAX_VALUE;
+	private long lastSequence = 0;
+	private long lastRequest = 0;
+	private boolean requested = false;
+
+	private volatile long frameCount = 0;
+	private volatile long lostCount = 0;
+	private volatile long staleCount = 0;
+	private volatile long errorCount = 0;
+	private volatile long requestCount = 0;
+
+	private volatile boolean running = false;
+	private DatagramChannel channel = null;
+	private Thread thread = null;
+
+	/**
+	 * Constructs receiver listening on {@link Pixy2FrameSender#STREAM_DEFAULT_PORT}
+	 */
+	public Pixy2FrameReceiver() {
+		this(Pixy2FrameSender.STREAM_DEFAULT_PORT);
+	}
+
+	/**
+	 * Constructs receiver
+	 * 
+	 * @param port UDP port to listen on
+	 */
+	public Pixy2FrameReceiver(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Opens UDP socket and starts receiver thread
+	 * 
+	 * @return {@link Pixy2#PIXY_RESULT_OK} if successful, otherwise
+	 *         {@link Pixy2#PIXY_RESULT_ERROR}
+	 */
+	public synchronized int start() {
+		if (thread != null)
+			return Pixy2.PIXY_RESULT_OK;
+		try {
+			channel = DatagramChannel.open();
+			channel.bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeChannel();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+		codec.reset();
+		requested = false;
+		running = true;
+		thread = new Thread(this, "Pixy2FrameReceiver");
+		thread.setDaemon(true);
+		thread.start();
+		return Pixy2.PIXY_RESULT_OK;
+	}
+
+	/**
+	 * Stops receiver thread and closes UDP socket
+	 */
+	public synchronized void stop() {
+		if (thread == null)
+			return;
+		running = false;
+		closeChannel(); // wakes up blocked receive
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	/**
+	 * Closes UDP socket
+	 */
+	private void closeChannel() {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+		channel = null;
+	}
+
+	/**
+	 * Receiver thread loop
+	 */
+	@Override
+	public void run() {
+		DatagramChannel channel = this.channel;
+		while (running) {
+			try {
+				receiveBuffer.clear();
+				SocketAddress sender = channel.receive(receiveBuffer);
+				receive(channel, sender, receiveBuffer.position());
+			} catch (ClosedChannelException e) {
+				break;
+			} catch (IOException e) {
+				errorCount++;
+			}
+		}
+	}
+
+	/**
+	 * Decodes and publishes one datagram
+	 * 
+	 * @param channel UDP socket
+	 * @param sender  Address of sender
+	 * @param length  Datagram length
+	 * 
+	 * @throws IOException If a keyframe request could not be sent
+	 */
+	private void receive(DatagramChannel channel, SocketAddress sender, int length) throws IOException {
+		int header = Pixy2FrameSender.STREAM_HEADER_SIZE;
+		if (length < header || data[0] != Pixy2FrameSender.STREAM_MAGIC || data[1] != Pixy2FrameSender.STREAM_FRAME) {
+			errorCount++;
+			return;
+		}
+		long now = System.nanoTime();
+
+		// drop reordered frames before they replace the decoder's reference frame
+		long sequence = Pixy2FrameCodec.getSequence(data, header, length - header);
+		if (sequence <= lastSequence && sequence >= 0) {
+			if (lastSequence - sequence <= RECEIVER_REORDER_WINDOW) {
+				staleCount++;
+				return;
+			}
+			lastSequence = 0;
+			offset = Long.MAX_VALUE;
+		}
+
+		int res = codec.decode(data, header, length - header, work);
+		if (res < 0) {
+			if (res != Pixy2FrameCodec.CODEC_RESULT_NO_REFERENCE)
+				errorCount++;
+			// keep the last good frame until the sender's next keyframe
+			if (!requested || now - lastRequest >= RECEIVER_KEYFRAME_REQUEST_NANOS) {
+				requested = true;
+				lastRequest = now;
+				requestCount++;
+				requestBuffer.clear();
+				channel.send(requestBuffer, sender);
+			}
+			return;
+		}
+		requested = false;
+		if (lastSequence != 0 && work.sequence > lastSequence + 1)
+			lostCount += work.sequence - lastSequence - 1;
+		lastSequence = work.sequence;
+
+		long sample = now - work.timestamp;
+		offset = offset == Long.MAX_VALUE ? sample : Math.min(sample, offset + RECEIVER_OFFSET_DRIFT_NANOS);
+		work.timestamp += offset;
+		latest.publish(work);
+		frameCount++;
+	}
+
+	/**
+	 * Copies the latest frame without blocking the receiver
+	 * 
+	 * @param dest Frame to copy into
+	 * 
+	 * @return Whether a frame has been received yet
+	 */
+	public boolean getLatestFrame(Pixy2Frame dest) {
+		return latest.read(dest);
+	}
+
+	/**
+	 * @return Sequence number of the latest frame, or 0 if none received
+	 */
+	public long getLatestSequence() {
+		return latest.getSequence();
+	}
+
+	/**
+	 * @return Whether receiver thread is running
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return Number of frames received
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return Number of frames never received, from gaps in sequence numbers
+	 */
+	public long getLostCount() {
+		return lostCount;
+	}
+
+	/**
+	 * @return Number of frames dropped for arriving after a newer frame
+	 */
+	public long getStaleCount() {
+		return staleCount;
+	}
+
+	/**
+	 * @return Number of keyframes requested from the sender
+	 */
+	public long getKeyframeRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * @return Number of malformed datagrams and socket errors
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+}
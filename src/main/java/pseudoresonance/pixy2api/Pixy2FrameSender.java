@@ -0,0 +1,178 @@
+package pseudoresonance.pixy2api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Streams frames over UDP, such as from a coprocessor polling Pixy2 to the
+ * robot
+ * 
+ * Runs on the {@link Pixy2Poller} thread as a frame listener and sends each
+ * new frame as one datagram encoded with a {@link Pixy2FrameCodec}, so most
+ * datagrams only carry what changed since the previous frame. A
+ * {@link Pixy2FrameReceiver} that misses a datagram asks for a keyframe, which
+ * is checked for without blocking before each send.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2FrameSender implements Pixy2Poller.FrameListener {
+	public final static int STREAM_DEFAULT_PORT = 5805;
+	public final static int STREAM_DEFAULT_KEYFRAME_INTERVAL = 10;
+
+	// Datagram header
+	public final static byte STREAM_MAGIC = (byte) 0xa2;
+	public final static byte STREAM_FRAME = 0x01;
+	public final static byte STREAM_KEYFRAME_REQUEST = 0x02;
+	public final static int STREAM_HEADER_SIZE = 2;
+
+	private final SocketAddress target;
+	private final Pixy2FrameCodec codec = new Pixy2FrameCodec();
+
+	private final byte[] data = new byte[STREAM_HEADER_SIZE + Pixy2FrameCodec.CODEC_MAX_SIZE];
+	private final ByteBuffer sendBuffer = ByteBuffer.wrap(data);
+	private final ByteBuffer requestBuffer = ByteBuffer.allocate(STREAM_HEADER_SIZE);
+
+	private DatagramChannel channel = null;
+
+	private volatile long sentCount = 0;
+	private volatile long keyframeRequests = 0;
+	private volatile long errorCount = 0;
+
+	/**
+	 * Constructs sender streaming to a receiver
+	 * 
+	 * @param host Host name or address of receiver
+	 * @param port UDP port of receiver
+	 */
+	public Pixy2FrameSender(String host, int port) {
+		this(new InetSocketAddress(host, port));
+	}
+
+	/**
+	 * Constructs sender streaming to a receiver
+	 * 
+	 * @param target Address of receiver
+	 */
+	public Pixy2FrameSender(SocketAddress target) {
+		this.target = target;
+		codec.setKeyframeInterval(STREAM_DEFAULT_KEYFRAME_INTERVAL);
+		data[0] = STREAM_MAGIC;
+		data[1] = STREAM_FRAME;
+	}
+
+	/**
+	 * Opens UDP socket
+	 * 
+	 * @return {@link Pixy2#PIXY_RESULT_OK} if successful, otherwise
+	 *         {@link Pixy2#PIXY_RESULT_ERROR}
+	 */
+	public synchronized int open() {
+		if (channel != null)
+			return Pixy2.PIXY_RESULT_OK;
+		try {
+			channel = DatagramChannel.open();
+			channel.configureBlocking(false);
+			channel.bind(null);
+			codec.reset();
+			return Pixy2.PIXY_RESULT_OK;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+	}
+
+	/**
+	 * Closes UDP socket
+	 */
+	public synchronized void close() {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+		channel = null;
+	}
+
+	/**
+	 * Sets how often a keyframe is sent even if no receiver asks for one
+	 * 
+	 * @param interval Frames per keyframe
+	 */
+	public synchronized void setKeyframeInterval(int interval) {
+		codec.setKeyframeInterval(interval);
+	}
+
+	/**
+	 * Sends new frame, called on the poller thread
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public synchronized void frameReceived(Pixy2Frame frame) {
+		if (channel == null)
+			return;
+		try {
+			// drain keyframe requests from receivers
+			requestBuffer.clear();
+			while (channel.receive(requestBuffer) != null) {
+				if (requestBuffer.position() == STREAM_HEADER_SIZE && requestBuffer.get(0) == STREAM_MAGIC
+						&& requestBuffer.get(1) == STREAM_KEYFRAME_REQUEST) {
+					codec.requestKeyframe();
+					keyframeRequests++;
+				}
+				requestBuffer.clear();
+			}
+
+			int length = codec.encode(frame, data, STREAM_HEADER_SIZE);
+			if (length < 0) {
+				errorCount++;
+				return;
+			}
+			sendBuffer.clear();
+			sendBuffer.limit(STREAM_HEADER_SIZE + length);
+			if (channel.send(sendBuffer, target) > 0) {
+				sentCount++;
+			} else {
+				// socket buffer full, datagram dropped, so don't build on it either
+				errorCount++;
+				codec.requestKeyframe();
+			}
+		} catch (IOException e) {
+			errorCount++;
+			// the receiver can't have decoded this frame, so don't build on it
+			codec.requestKeyframe();
+		}
+	}
+
+	/**
+	 * @return Number of frames sent
+	 */
+	public long getSentCount() {
+		return sentCount;
+	}
+
+	/**
+	 * @return Number of keyframes requested by receivers
+	 */
+	public long getKeyframeRequests() {
+		return keyframeRequests;
+	}
+
+	/**
+	 * @return Number of frames that could not be encoded or sent
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+}
@@ -61,6 +61,20 @@ public class Pixy2Line {
 
 	public final static byte LINE_MAX_INTERSECTION_LINES = 6;
 
+	// Pre-encoded requests for every combination of request type and features
+	private final static Pixy2Request[] FEATURE_REQUESTS = new Pixy2Request[16];
+
+	static {
+		for (int i = 0; i < FEATURE_REQUESTS.length; i++)
+			FEATURE_REQUESTS[i] = Pixy2Request.create(LINE_REQUEST_GET_FEATURES, (byte) (i >> 3),
+					(byte) (i & 0x07));
+	}
+
+	public final static Pixy2Request LINE_REQUEST_MAIN_FEATURES = createFeaturesRequest(LINE_GET_MAIN_FEATURES,
+			LINE_ALL_FEATURES);
+	public final static Pixy2Request LINE_REQUEST_ALL_FEATURES = createFeaturesRequest(LINE_GET_ALL_FEATURES,
+			LINE_ALL_FEATURES);
+
 	private final Pixy2 pixy;
 
 	private Vector[] vectors = null;
@@ -97,71 +111,53 @@ public class Pixy2Line {
 	 * @return Pixy2 error code
 	 */
 	public byte getFeatures(byte type, byte features, boolean wait) {
-		byte res;
-		int offset, fsize, ftype;
-		byte[] fdata;
-
 		vectors = null;
 		intersections = null;
 		barcodes = null;
 
+		byte res = requestFeatures(createFeaturesRequest(type, features), wait);
+		if (res < 0)
+			return res;
+		return parseFeatures();
+	}
+
+	/**
+	 * Gets specified features from Pixy2 into a preallocated frame without
+	 * updating the cached vectors, intersections and barcodes
+	 * 
+	 * @param wait    Wait for response
+	 * @param request Pre-encoded request from
+	 *                {@link #createFeaturesRequest(byte, byte)}
+	 * @param frame   {@link Pixy2Frame} to parse features into
+	 * 
+	 * @return Bitmask of features or Pixy2 error code
+	 */
+	public int getFeatures(boolean wait, Pixy2Request request, Pixy2Frame frame) {
+		byte res = requestFeatures(request, wait);
+		if (res < 0)
+			return res;
+		frame.timestamp = System.nanoTime();
+		return frame.parseFeatures(pixy.buffer, pixy.length);
+	}
+
+	/**
+	 * Sends features request and waits until a features response is in the Pixy2
+	 * buffer
+	 * 
+	 * @param request Pre-encoded features request
+	 * @param wait    Wait for response
+	 * 
+	 * @return Pixy2 error code
+	 */
+	private byte requestFeatures(Pixy2Request request, boolean wait) {
 		long start = System.currentTimeMillis();
 
 		while (true) {
-			// fill in request data
-			pixy.length = 2;
-			pixy.type = LINE_REQUEST_GET_FEATURES;
-			pixy.bufferPayload[0] = type;
-			pixy.bufferPayload[1] = features;
-
 			// send request
-			pixy.sendPacket();
+			pixy.sendPacket(request);
 			if (pixy.receivePacket() == 0) {
 				if (pixy.type == LINE_RESPONSE_GET_FEATURES) {
-					// parse line response
-					for (offset = 0, res = 0; pixy.length > offset; offset += fsize + 2) {
-						ftype = pixy.buffer[offset];
-						fsize = pixy.buffer[offset + 1];
-						fdata = Arrays.copyOfRange(pixy.buffer, offset + 2, pixy.length);
-						if (ftype == LINE_VECTOR) {
-							vectors = new Vector[(int) Math.floor(fdata.length / 6)];
-							for (int i = 0; (i + 1) * 6 <= fdata.length; i++) {
-								vectors[i] = new Vector(fdata[(6 * i)] & 0xFF, fdata[(6 * i) + 1] & 0xFF,
-										fdata[(6 * i) + 2] & 0xFF, fdata[(6 * i) + 3] & 0xFF, fdata[(6 * i) + 4] & 0xFF,
-										fdata[(6 * i) + 5] & 0xFF);
-							}
-							res |= LINE_VECTOR;
-						} else if (ftype == LINE_INTERSECTION) {
-							int size = 4 + (4 * LINE_MAX_INTERSECTION_LINES);
-							intersections = new Intersection[(int) Math
-									.floor(fdata.length / (4 + (4 * LINE_MAX_INTERSECTION_LINES)))];
-							for (int i = 0; (i + 1) * size < fdata.length; i++) {
-								IntersectionLine[] lines = new IntersectionLine[LINE_MAX_INTERSECTION_LINES];
-								for (int l = 0; l < LINE_MAX_INTERSECTION_LINES; l++) {
-									int arr = ((size * i) + 4);
-									int index = fdata[arr + (4 * l)];
-									int reserved = fdata[arr + (4 * l) + 1];
-									short angle = (short) (((fdata[arr + (4 * l) + 3] & 0xff) << 8)
-											| (fdata[arr + (4 * l) + 2] & 0xff));
-									IntersectionLine intLine = new IntersectionLine(index, reserved, angle);
-									lines[l] = intLine;
-								}
-								intersections[i] = new Intersection(fdata[size * i] & 0xFF,
-										fdata[(size * i) + 1] & 0xFF, fdata[(size * i) + 2] & 0xFF,
-										fdata[(size * i) + 3] & 0xFF, lines);
-							}
-							res |= LINE_INTERSECTION;
-						} else if (ftype == LINE_BARCODE) {
-							barcodes = new Barcode[(int) Math.floor(fdata.length / 4)];
-							for (int i = 0; (i + 1) * 4 <= fdata.length; i++) {
-								barcodes[i] = new Barcode(fdata[(4 * i)] & 0xFF, fdata[(4 * i) + 1] & 0xFF,
-										fdata[(4 * i) + 2] & 0xFF, fdata[(4 * i) + 3] & 0xFF);
-							}
-							res |= LINE_BARCODE;
-						} else
-							break; // parse error
-					}
-					return res;
+					return Pixy2.PIXY_RESULT_OK;
 				} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR) {
 					// if it's not a busy response, return the error
 					if (pixy.buffer[0] != Pixy2.PIXY_RESULT_BUSY)
@@ -184,6 +180,80 @@ public class Pixy2Line {
 		}
 	}
 
+	/**
+	 * Parses features from a line features response in the Pixy2 buffer
+	 * 
+	 * @return Bitmask of features parsed
+	 */
+	byte parseFeatures() {
+		byte res;
+		int offset, fsize, ftype;
+		byte[] fdata;
+
+		vectors = null;
+		intersections = null;
+		barcodes = null;
+
+		// parse line response
+		for (offset = 0, res = 0; pixy.length > offset; offset += fsize + 2) {
+			ftype = pixy.buffer[offset];
+			fsize = pixy.buffer[offset + 1];
+			fdata = Arrays.copyOfRange(pixy.buffer, offset + 2, pixy.length);
+			if (ftype == LINE_VECTOR) {
+				vectors = new Vector[(int) Math.floor(fdata.length / 6)];
+				for (int i = 0; (i + 1) * 6 <= fdata.length; i++) {
+					vectors[i] = new Vector(fdata[(6 * i)] & 0xFF, fdata[(6 * i) + 1] & 0xFF,
+							fdata[(6 * i) + 2] & 0xFF, fdata[(6 * i) + 3] & 0xFF, fdata[(6 * i) + 4] & 0xFF,
+							fdata[(6 * i) + 5] & 0xFF);
+				}
+				res |= LINE_VECTOR;
+			} else if (ftype == LINE_INTERSECTION) {
+				int size = 4 + (4 * LINE_MAX_INTERSECTION_LINES);
+				intersections = new Intersection[(int) Math
+						.floor(fdata.length / (4 + (4 * LINE_MAX_INTERSECTION_LINES)))];
+				for (int i = 0; (i + 1) * size < fdata.length; i++) {
+					IntersectionLine[] lines = new IntersectionLine[LINE_MAX_INTERSECTION_LINES];
+					for (int l = 0; l < LINE_MAX_INTERSECTION_LINES; l++) {
+						int arr = ((size * i) + 4);
+						int index = fdata[arr + (4 * l)];
+						int reserved = fdata[arr + (4 * l) + 1];
+						short angle = (short) (((fdata[arr + (4 * l) + 3] & 0xff) << 8)
+								| (fdata[arr + (4 * l) + 2] & 0xff));
+						IntersectionLine intLine = new IntersectionLine(index, reserved, angle);
+						lines[l] = intLine;
+					}
+					intersections[i] = new Intersection(fdata[size * i] & 0xFF,
+							fdata[(size * i) + 1] & 0xFF, fdata[(size * i) + 2] & 0xFF,
+							fdata[(size * i) + 3] & 0xFF, lines);
+				}
+				res |= LINE_INTERSECTION;
+			} else if (ftype == LINE_BARCODE) {
+				barcodes = new Barcode[(int) Math.floor(fdata.length / 4)];
+				for (int i = 0; (i + 1) * 4 <= fdata.length; i++) {
+					barcodes[i] = new Barcode(fdata[(4 * i)] & 0xFF, fdata[(4 * i) + 1] & 0xFF,
+							fdata[(4 * i) + 2] & 0xFF, fdata[(4 * i) + 3] & 0xFF);
+				}
+				res |= LINE_BARCODE;
+			} else
+				break; // parse error
+		}
+		return res;
+	}
+
+	/**
+	 * Gets pre-encoded request for line features
+	 * 
+	 * @param type     Type of features to get
+	 * @param features Features to get
+	 * 
+	 * @return Pre-encoded request
+	 */
+	public static Pixy2Request createFeaturesRequest(byte type, byte features) {
+		if ((type & ~0x01) == 0 && (features & ~LINE_ALL_FEATURES) == 0)
+			return FEATURE_REQUESTS[(type << 3) | features];
+		return Pixy2Request.create(LINE_REQUEST_GET_FEATURES, type, features);
+	}
+
 	/**
 	 * Gets detected lines from cache
 	 * 
@@ -0,0 +1,238 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Smoothed line model fused from a sliding window of frames
+ * 
+ * Fits the line x = a + b * y by least squares to the primary vector
+ * endpoints of the last few frames. Each frame's sums are kept in a ring, so
+ * adding a frame and dropping the oldest costs the same however long the
+ * window is. Vectors far from the current model are rejected as outliers once
+ * the model is confident, and frames flagged
+ * {@link Pixy2Line#LINE_FLAG_INVALID} add nothing. Confidence combines how
+ * much of the window contributed with how well the points fit.
+ * 
+ * Runs on the {@link Pixy2Poller} thread as a frame listener, or can be
+ * updated directly with {@link #update(Pixy2Frame)}.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2LineEstimator implements Pixy2Poller.FrameListener {
+	public final static int ESTIMATOR_DEFAULT_WINDOW = 8;
+	public final static double ESTIMATOR_DEFAULT_OUTLIER = 8;
+	public final static double ESTIMATOR_GATE_CONFIDENCE = 0.5;
+
+	private final int window;
+	private double outlier = ESTIMATOR_DEFAULT_OUTLIER;
+
+	// Per frame sums of points, ring indexed by frame
+	private final double[] n, sy, sx, syy, sxy, sxx;
+	private int head = 0;
+	private int frames = 0;
+	private double tn, tsy, tsx, tsyy, tsxy, tsxx;
+
+	private int vectorIndex = -1;
+	private double a = Double.NaN, b = Double.NaN;
+	private double confidence = 0;
+	private long timestamp = 0;
+
+	/**
+	 * Constructs estimator over {@link #ESTIMATOR_DEFAULT_WINDOW} frames
+	 */
+	public Pixy2LineEstimator() {
+		this(ESTIMATOR_DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Constructs estimator
+	 * 
+	 * @param window Number of frames to fuse
+	 */
+	public Pixy2LineEstimator(int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("Window must be at least 1 frame");
+		this.window = window;
+		n = new double[window];
+		sy = new double[window];
+		sx = new double[window];
+		syy = new double[window];
+		sxy = new double[window];
+		sxx = new double[window];
+	}
+
+	/**
+	 * Sets how far a vector endpoint may be from the model before the vector is
+	 * rejected
+	 * 
+	 * @param outlier Distance in pixels
+	 */
+	public synchronized void setOutlierDistance(double outlier) {
+		this.outlier = outlier;
+	}
+
+	/**
+	 * Updates model from a new frame
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_LINE) != 0)
+			update(frame);
+	}
+
+	/**
+	 * Slides window forward by a frame and refits the model
+	 * 
+	 * @param frame Frame
+	 */
+	public synchronized void update(Pixy2Frame frame) {
+		// drop oldest frame's sums
+		int s = head;
+		tn -= n[s];
+		tsy -= sy[s];
+		tsx -= sx[s];
+		tsyy -= syy[s];
+		tsxy -= sxy[s];
+		tsxx -= sxx[s];
+		n[s] = sy[s] = sx[s] = syy[s] = sxy[s] = sxx[s] = 0;
+		head = (s + 1) % window;
+		if (frames < window)
+			frames++;
+
+		int v = findVector(frame);
+		if (v >= 0) {
+			vectorIndex = frame.vectorIndex[v];
+			add(s, frame.vectorX0[v], frame.vectorY0[v]);
+			add(s, frame.vectorX1[v], frame.vectorY1[v]);
+			tn += n[s];
+			tsy += sy[s];
+			tsx += sx[s];
+			tsyy += syy[s];
+			tsxy += sxy[s];
+			tsxx += sxx[s];
+		}
+		timestamp = frame.timestamp;
+		fit();
+	}
+
+	/**
+	 * Finds primary vector that fits the model
+	 * 
+	 * @param frame Frame
+	 * 
+	 * @return Vector number, or -1 if no valid vector fits
+	 */
+	private int findVector(Pixy2Frame frame) {
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		boolean gate = confidence >= ESTIMATOR_GATE_CONFIDENCE;
+		for (int i = 0; i < frame.vectorCount; i++) {
+			if ((frame.vectorFlags[i] & Pixy2Line.LINE_FLAG_INVALID) != 0)
+				continue;
+			if (!gate) {
+				// no model to compare to, prefer the vector followed so far
+				if (best < 0 || frame.vectorIndex[i] == vectorIndex)
+					best = i;
+				continue;
+			}
+			double d = Math.max(Math.abs(frame.vectorX0[i] - getX(frame.vectorY0[i])),
+					Math.abs(frame.vectorX1[i] - getX(frame.vectorY1[i])));
+			if (d <= outlier && d < bestDistance) {
+				best = i;
+				bestDistance = d;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Adds a point to a frame's sums
+	 * 
+	 * @param s Frame slot
+	 * @param x X position
+	 * @param y Y position
+	 */
+	private void add(int s, int x, int y) {
+		n[s]++;
+		sy[s] += y;
+		sx[s] += x;
+		syy[s] += y * y;
+		sxy[s] += x * y;
+		sxx[s] += x * x;
+	}
+
+	/**
+	 * Refits model to the window sums
+	 */
+	private void fit() {
+		double det = tn * tsyy - tsy * tsy;
+		if (tn < 2 || det < 1e-6) {
+			if (tn < 2)
+				confidence = 0;
+			return; // keep last model
+		}
+		b = (tn * tsxy - tsy * tsx) / det;
+		a = (tsx - b * tsy) / tn;
+		double sse = Math.max(0, tsxx - a * tsx - b * tsxy);
+		double rms = Math.sqrt(sse / tn);
+		double coverage = 0;
+		for (int s = 0; s < window; s++)
+			if (n[s] > 0)
+				coverage++;
+		coverage /= window;
+		confidence = coverage * Math.max(0, 1 - rms / outlier);
+	}
+
+	/**
+	 * Gets line position at a row of the frame
+	 * 
+	 * @param y Y position
+	 * 
+	 * @return X position of the line, or NaN if there is no model yet
+	 */
+	public synchronized double getX(double y) {
+		return a + b * y;
+	}
+
+	/**
+	 * @return Heading of the line from straight up in radians, positive to the
+	 *         left, or NaN if there is no model yet
+	 */
+	public synchronized double getHeading() {
+		return Math.atan(b);
+	}
+
+	/**
+	 * @return Slope of x over y of the model
+	 */
+	public synchronized double getSlope() {
+		return b;
+	}
+
+	/**
+	 * @return Confidence in the model from 0 to 1
+	 */
+	public synchronized double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * @return Time of the latest frame in {@link System#nanoTime()} units
+	 */
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return Number of frames in the window so far
+	 */
+	public synchronized int getFrameCount() {
+		return frames;
+	}
+
+}
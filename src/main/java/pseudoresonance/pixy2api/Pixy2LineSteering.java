@@ -0,0 +1,324 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Fixed-point line following steering solver
+ * 
+ * Runs on the {@link Pixy2Poller} thread as a frame listener, reading the
+ * primary vector and intersections straight from the parsed frame. Heading
+ * error comes from an arctangent table and lateral offset from integer
+ * extrapolation of the vector to the bottom of the frame, so each frame costs
+ * the same and allocates nothing. Frames whose vector is flagged
+ * {@link Pixy2Line#LINE_FLAG_INVALID} hold the last output. Planned turns are
+ * sent with {@link Pixy2Line#setNextTurn(short)} as each intersection comes
+ * into view.
+ * 
+ * Angles follow the Pixy2 turn angle convention, positive to the left, and
+ * are in hundredths of a degree. Lateral offset is in line tracking pixels,
+ * positive to the right. Set the poller's features request to
+ * {@link Pixy2Line#LINE_REQUEST_MAIN_FEATURES} to use it.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2LineSteering implements Pixy2Poller.FrameListener {
+	// Pixy2 line tracking resolution
+	public final static int STEER_FRAME_WIDTH = 79;
+	public final static int STEER_FRAME_HEIGHT = 52;
+
+	public final static int STEER_GAIN_SHIFT = 10;
+	public final static int STEER_MAX_PLANNED_TURNS = 16;
+
+	private final static int ATAN_BITS = 8;
+	// atan(i / 256) in hundredths of a degree
+	private final static short[] ATAN_TABLE = new short[(1 << ATAN_BITS) + 1];
+
+	static {
+		for (int i = 0; i < ATAN_TABLE.length; i++)
+			ATAN_TABLE[i] = (short) Math.round(Math.toDegrees(Math.atan((double) i / (1 << ATAN_BITS))) * 100);
+	}
+
+	private final Pixy2Poller poller;
+
+	private volatile int headingGain = 0, offsetGain = 0;
+
+	private final int[] plannedTurns = new int[STEER_MAX_PLANNED_TURNS];
+	private int plannedHead = 0, plannedCount = 0;
+	private boolean intersectionVisible = false;
+
+	private int vectorIndex = -1;
+	private volatile boolean valid = false;
+	private volatile int invalidFrames = 0;
+	private volatile int heading = 0;
+	private volatile int offset = 0;
+	private volatile int steering = 0;
+	private volatile int intersectionBranches = 0;
+	private volatile int turnsSent = 0;
+
+	private boolean enabled = false;
+
+	/**
+	 * Constructs disabled steering solver
+	 * 
+	 * @param poller Poller for the Pixy2 tracking the line
+	 */
+	public Pixy2LineSteering(Pixy2Poller poller) {
+		this.poller = poller;
+	}
+
+	/**
+	 * Starts or stops solving
+	 * 
+	 * @param enabled Whether to solve for steering every frame
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		if (this.enabled == enabled)
+			return;
+		this.enabled = enabled;
+		if (enabled)
+			poller.addFrameListener(this);
+		else
+			poller.removeFrameListener(this);
+	}
+
+	/**
+	 * Sets steering gains in units of 1/1024
+	 * 
+	 * @param heading Gain on heading error in hundredths of a degree
+	 * @param offset  Gain on lateral offset in pixels
+	 */
+	public void setGains(int heading, int offset) {
+		this.headingGain = heading;
+		this.offsetGain = offset;
+	}
+
+	/**
+	 * Plans turn for an upcoming intersection. Planned turns are used in order,
+	 * one per intersection.
+	 * 
+	 * @param angle Turn angle in degrees, positive to the left
+	 * 
+	 * @return Whether there was room to plan the turn
+	 */
+	public synchronized boolean planTurn(int angle) {
+		if (plannedCount >= STEER_MAX_PLANNED_TURNS)
+			return false;
+		plannedTurns[(plannedHead + plannedCount++) % STEER_MAX_PLANNED_TURNS] = angle;
+		return true;
+	}
+
+	/**
+	 * Clears planned turns
+	 */
+	public synchronized void clearTurns() {
+		plannedCount = 0;
+	}
+
+	/**
+	 * @return Number of planned turns not yet sent
+	 */
+	public synchronized int getPlannedTurnCount() {
+		return plannedCount;
+	}
+
+	/**
+	 * Sets turn angle used at intersections with no planned turn, sent on the
+	 * poller thread
+	 * 
+	 * @param angle Turn angle in degrees, positive to the left
+	 */
+	public void setDefaultTurn(final int angle) {
+		poller.invokeLater(new Pixy2Poller.Task() {
+			@Override
+			public void run(Pixy2 pixy) {
+				pixy.getLine().setDefaultTurn((short) angle);
+			}
+		});
+	}
+
+	/**
+	 * Solves for steering from a new frame
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_LINE) == 0)
+			return;
+		int v = findVector(frame);
+		int flags = v < 0 ? Pixy2Line.LINE_FLAG_INVALID : frame.vectorFlags[v];
+		intersectionBranches = frame.intersectionCount > 0 ? frame.intersectionNumber[0] : 0;
+
+		boolean intersection = (flags & Pixy2Line.LINE_FLAG_INTERSECTION_PRESENT) != 0;
+		if (intersection && !intersectionVisible)
+			sendPlannedTurn();
+		intersectionVisible = intersection;
+
+		if ((flags & Pixy2Line.LINE_FLAG_INVALID) != 0) {
+			valid = false;
+			invalidFrames++;
+			return;
+		}
+		vectorIndex = frame.vectorIndex[v];
+
+		// tail towards the robot, head away from it
+		int x0 = frame.vectorX0[v], y0 = frame.vectorY0[v];
+		int x1 = frame.vectorX1[v], y1 = frame.vectorY1[v];
+		if (y1 > y0) {
+			int t = x0;
+			x0 = x1;
+			x1 = t;
+			t = y0;
+			y0 = y1;
+			y1 = t;
+		}
+		int dx = x1 - x0, dy = y0 - y1;
+		int h = atan2(-dx, dy);
+		int bottomX = dy == 0 ? x0 : x0 - (dx * (STEER_FRAME_HEIGHT - 1 - y0)) / dy;
+		int o = bottomX - (STEER_FRAME_WIDTH / 2);
+
+		heading = h;
+		offset = o;
+		steering = (h * headingGain - o * offsetGain) >> STEER_GAIN_SHIFT;
+		invalidFrames = 0;
+		valid = true;
+	}
+
+	/**
+	 * Finds primary vector, the vector tracked last frame if still present, else
+	 * the vector starting nearest the bottom center
+	 * 
+	 * @param frame Frame
+	 * 
+	 * @return Vector number, or -1 if there are no vectors
+	 */
+	private int findVector(Pixy2Frame frame) {
+		int n = frame.vectorCount;
+		if (n == 1)
+			return 0;
+		for (int i = 0; i < n; i++)
+			if (frame.vectorIndex[i] == vectorIndex)
+				return i;
+		int best = -1, bestDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			int y = Math.max(frame.vectorY0[i], frame.vectorY1[i]);
+			int x = frame.vectorY0[i] >= frame.vectorY1[i] ? frame.vectorX0[i] : frame.vectorX1[i];
+			int d = Math.abs(x - STEER_FRAME_WIDTH / 2) + (STEER_FRAME_HEIGHT - 1 - y);
+			if (d < bestDistance) {
+				best = i;
+				bestDistance = d;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Sends next planned turn, called on the poller thread
+	 */
+	private void sendPlannedTurn() {
+		int angle;
+		synchronized (this) {
+			if (plannedCount == 0)
+				return;
+			angle = plannedTurns[plannedHead];
+			plannedHead = (plannedHead + 1) % STEER_MAX_PLANNED_TURNS;
+			plannedCount--;
+		}
+		if (poller.getPixy().getLine().setNextTurn((short) angle) >= 0)
+			turnsSent++;
+	}
+
+	/**
+	 * Computes angle of a vector from straight up using the arctangent table
+	 * 
+	 * @param x Component across, positive left
+	 * @param y Component along, positive up
+	 * 
+	 * @return Angle in hundredths of a degree, positive to the left
+	 */
+	static int atan2(int x, int y) {
+		if (x == 0 && y == 0)
+			return 0;
+		int ax = Math.abs(x), ay = Math.abs(y);
+		int a;
+		if (ax <= ay)
+			a = atan(ax, ay);
+		else
+			a = 9000 - atan(ay, ax);
+		if (y < 0)
+			a = 18000 - a;
+		return x < 0 ? -a : a;
+	}
+
+	/**
+	 * Looks up arctangent of a ratio no greater than 1, interpolating between
+	 * table entries
+	 * 
+	 * @param num Numerator
+	 * @param den Denominator, at least the numerator
+	 * 
+	 * @return Angle in hundredths of a degree
+	 */
+	private static int atan(int num, int den) {
+		int r = (int) (((long) num << (2 * ATAN_BITS)) / den);
+		int i = r >> ATAN_BITS, frac = r & ((1 << ATAN_BITS) - 1);
+		if (i >= (1 << ATAN_BITS))
+			return ATAN_TABLE[1 << ATAN_BITS];
+		return ATAN_TABLE[i] + (((ATAN_TABLE[i + 1] - ATAN_TABLE[i]) * frac) >> ATAN_BITS);
+	}
+
+	/**
+	 * @return Whether the latest frame had a valid vector
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * @return Number of frames in a row without a valid vector
+	 */
+	public int getInvalidFrames() {
+		return invalidFrames;
+	}
+
+	/**
+	 * @return Heading error in hundredths of a degree, positive when the line
+	 *         leads to the left
+	 */
+	public int getHeadingError() {
+		return heading;
+	}
+
+	/**
+	 * @return Lateral offset of the line at the bottom of the frame in pixels,
+	 *         positive to the right
+	 */
+	public int getLateralOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return Steering command from the configured gains, positive to the left
+	 */
+	public int getSteering() {
+		return steering;
+	}
+
+	/**
+	 * @return Number of lines at the intersection in view, or 0 if none
+	 */
+	public int getIntersectionBranches() {
+		return intersectionBranches;
+	}
+
+	/**
+	 * @return Number of planned turns sent to Pixy2
+	 */
+	public int getTurnsSent() {
+		return turnsSent;
+	}
+
+}
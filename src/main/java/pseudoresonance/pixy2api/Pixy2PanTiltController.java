@@ -0,0 +1,297 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Closed-loop pan/tilt tracking controller for Pixy2
+ * 
+ * Runs on the {@link Pixy2Poller} thread as a frame listener. Each frame it
+ * picks a target block, runs a PD loop per axis in fixed-point math and sends
+ * the new servo positions through the poller's {@link Pixy2Actuators} in the
+ * same cycle, so tracking costs user code no round trips. Once a target is
+ * picked it is followed by its tracking index until it is lost, after which
+ * the largest block with the target signature is picked again.
+ * 
+ * Gains are in units of 1/1024 like the Pixy2 Arduino pan/tilt demo. Since
+ * servos are position devices the PD output is added to the current command.
+ * Negative gains reverse an axis.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2PanTiltController implements Pixy2Poller.FrameListener {
+	public final static int PANTILT_GAIN_SHIFT = 10;
+	public final static int PANTILT_DEFAULT_PAN_P = 400;
+	public final static int PANTILT_DEFAULT_PAN_D = 400;
+	public final static int PANTILT_DEFAULT_TILT_P = 500;
+	public final static int PANTILT_DEFAULT_TILT_D = 500;
+
+	// Pixy2 color connected components resolution, used until resolution is known
+	public final static int PANTILT_DEFAULT_FRAME_WIDTH = 316;
+	public final static int PANTILT_DEFAULT_FRAME_HEIGHT = 208;
+
+	private final static int NO_ERROR = Integer.MIN_VALUE;
+	private final static int NO_TARGET = -1;
+
+	private final Pixy2Poller poller;
+
+	private volatile int signature = 0;
+	private volatile int panP = PANTILT_DEFAULT_PAN_P, panD = PANTILT_DEFAULT_PAN_D;
+	private volatile int tiltP = PANTILT_DEFAULT_TILT_P, tiltD = PANTILT_DEFAULT_TILT_D;
+	private volatile int minPos = Pixy2.PIXY_RCS_MIN_POS, maxPos = Pixy2.PIXY_RCS_MAX_POS;
+
+	private int panCommand = Pixy2.PIXY_RCS_CENTER_POS;
+	private int tiltCommand = Pixy2.PIXY_RCS_CENTER_POS;
+	private int panPrevError = NO_ERROR;
+	private int tiltPrevError = NO_ERROR;
+	private volatile int targetIndex = NO_TARGET;
+	private volatile int pan = Pixy2.PIXY_RCS_CENTER_POS;
+	private volatile int tilt = Pixy2.PIXY_RCS_CENTER_POS;
+
+	private boolean enabled = false;
+	private boolean listening = false;
+
+	/**
+	 * Constructs disabled pan/tilt controller
+	 * 
+	 * @param poller Poller for the Pixy2 carrying the servos
+	 */
+	public Pixy2PanTiltController(Pixy2Poller poller) {
+		this.poller = poller;
+	}
+
+	/**
+	 * Starts or stops tracking. Servos are centered when tracking starts.
+	 * 
+	 * @param enabled Whether to track
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		if (this.enabled == enabled)
+			return;
+		this.enabled = enabled;
+		if (enabled) {
+			// listen only after reset, so the first frame doesn't step from stale state
+			poller.invokeLater(new Pixy2Poller.Task() {
+				@Override
+				public void run(Pixy2 pixy) {
+					start();
+				}
+			});
+		} else if (listening) {
+			listening = false;
+			poller.removeFrameListener(this);
+		}
+	}
+
+	/**
+	 * Resets and starts listening unless disabled meanwhile, called on the
+	 * poller thread
+	 */
+	private synchronized void start() {
+		if (!enabled || listening)
+			return;
+		reset();
+		listening = true;
+		poller.addFrameListener(this);
+	}
+
+	/**
+	 * @return Whether tracking is enabled
+	 */
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets signature of blocks to track
+	 * 
+	 * @param signature Block signature, or 0 to track any signature
+	 */
+	public void setSignature(int signature) {
+		this.signature = signature;
+		this.targetIndex = NO_TARGET;
+	}
+
+	/**
+	 * Locks on to the block with a given tracking index
+	 * 
+	 * @param index Block tracking index
+	 */
+	public void setTargetIndex(int index) {
+		this.targetIndex = index;
+	}
+
+	/**
+	 * Sets pan loop gains in units of 1/1024
+	 * 
+	 * @param p Proportional gain
+	 * @param d Derivative gain
+	 */
+	public void setPanGains(int p, int d) {
+		this.panP = p;
+		this.panD = d;
+	}
+
+	/**
+	 * Sets tilt loop gains in units of 1/1024
+	 * 
+	 * @param p Proportional gain
+	 * @param d Derivative gain
+	 */
+	public void setTiltGains(int p, int d) {
+		this.tiltP = p;
+		this.tiltD = d;
+	}
+
+	/**
+	 * Sets servo position limits, within {@link Pixy2#PIXY_RCS_MIN_POS} and
+	 * {@link Pixy2#PIXY_RCS_MAX_POS}
+	 * 
+	 * @param min Minimum servo position
+	 * @param max Maximum servo position
+	 */
+	public void setLimits(int min, int max) {
+		if (min > max)
+			throw new IllegalArgumentException("Minimum must not be greater than maximum");
+		this.minPos = Math.max(min, Pixy2.PIXY_RCS_MIN_POS);
+		this.maxPos = Math.min(max, Pixy2.PIXY_RCS_MAX_POS);
+	}
+
+	/**
+	 * Centers servos and forgets target, must be called on the poller thread
+	 */
+	private void reset() {
+		panCommand = tiltCommand = clamp((minPos + maxPos) / 2);
+		panPrevError = tiltPrevError = NO_ERROR;
+		targetIndex = NO_TARGET;
+		pan = panCommand;
+		tilt = tiltCommand;
+		poller.getActuators().setServos(panCommand, tiltCommand);
+	}
+
+	/**
+	 * Updates servo commands from a new frame
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_BLOCKS) == 0)
+			return;
+		int target = findTarget(frame);
+		if (target < 0) {
+			// lost target, hold position and don't take derivative across the gap
+			targetIndex = NO_TARGET;
+			panPrevError = tiltPrevError = NO_ERROR;
+			return;
+		}
+		targetIndex = frame.blockIndex[target];
+
+		Pixy2 pixy = poller.getPixy();
+		int width = pixy.frameWidth > 0 ? pixy.frameWidth : PANTILT_DEFAULT_FRAME_WIDTH;
+		int height = pixy.frameHeight > 0 ? pixy.frameHeight : PANTILT_DEFAULT_FRAME_HEIGHT;
+		int panError = (width / 2) - frame.blockX[target];
+		int tiltError = frame.blockY[target] - (height / 2);
+
+		if (panPrevError != NO_ERROR) {
+			panCommand = clamp(panCommand + pd(panError, panPrevError, panP, panD));
+			tiltCommand = clamp(tiltCommand + pd(tiltError, tiltPrevError, tiltP, tiltD));
+		}
+		panPrevError = panError;
+		tiltPrevError = tiltError;
+		pan = panCommand;
+		tilt = tiltCommand;
+
+		// send within the same cycle, unchanged positions are dropped by the actuators
+		Pixy2Actuators actuators = poller.getActuators();
+		actuators.setServos(panCommand, tiltCommand);
+		actuators.flush();
+	}
+
+	/**
+	 * Finds block to track in frame
+	 * 
+	 * @param frame Frame
+	 * 
+	 * @return Block number or -1 if no block matches
+	 */
+	private int findTarget(Pixy2Frame frame) {
+		int index = targetIndex;
+		int sig = signature;
+		if (index != NO_TARGET) {
+			for (int i = 0; i < frame.blockCount; i++)
+				if (frame.blockIndex[i] == index && (sig == 0 || frame.blockSignature[i] == sig))
+					return i;
+		}
+		if (sig > 0 && sig <= Pixy2CCC.CCC_MAX_SIGNATURE)
+			return frame.getLargestBlock(sig);
+		int best = -1, bestArea = -1;
+		for (int i = 0; i < frame.blockCount; i++) {
+			if (sig != 0 && frame.blockSignature[i] != sig)
+				continue;
+			int area = frame.blockWidth[i] * frame.blockHeight[i];
+			if (area > bestArea) {
+				best = i;
+				bestArea = area;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Computes fixed-point PD output
+	 * 
+	 * @param error     Current error
+	 * @param prevError Previous error
+	 * @param p         Proportional gain in units of 1/1024
+	 * @param d         Derivative gain in units of 1/1024
+	 * 
+	 * @return PD output
+	 */
+	private static int pd(int error, int prevError, int p, int d) {
+		return (error * p + (error - prevError) * d) >> PANTILT_GAIN_SHIFT;
+	}
+
+	/**
+	 * Limits servo position to configured limits
+	 * 
+	 * @param pos Servo position
+	 * 
+	 * @return Limited servo position
+	 */
+	private int clamp(int pos) {
+		int min = minPos, max = maxPos;
+		return pos >= max ? max : (pos <= min ? min : pos);
+	}
+
+	/**
+	 * @return Latest pan servo command
+	 */
+	public int getPan() {
+		return pan;
+	}
+
+	/**
+	 * @return Latest tilt servo command
+	 */
+	public int getTilt() {
+		return tilt;
+	}
+
+	/**
+	 * @return Tracking index of target block, or -1 if no target
+	 */
+	public int getTargetIndex() {
+		return targetIndex;
+	}
+
+	/**
+	 * @return Whether a target was found in the latest frame
+	 */
+	public boolean hasTarget() {
+		return targetIndex != NO_TARGET;
+	}
+
+}
@@ -0,0 +1,380 @@
+package pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Background I/O thread for Pixy2
+ * 
+ * Owns all communication with one Pixy2 once started. Each cycle polls for a
+ * new camera frame with pre-encoded block and/or line feature requests, parses
+ * it into a preallocated {@link Pixy2Frame}, publishes it for lock-free reads
+ * and notifies frame listeners. Tasks then run on the same thread, so
+ * actuator writes and other commands happen between polls instead of
+ * competing with them for the link. While Pixy2 has no new frame, the poller
+ * sleeps briefly and keeps running tasks.
+ * 
+ * Pixy2 is not thread safe: while the poller is running, other threads must
+ * not call Pixy2 directly, and should use {@link #invokeLater(Task)} or the
+ * {@link Pixy2Actuators} instead.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2Poller implements Runnable {
+	public final static long POLLER_IDLE_MICROS = 500;
+	public final static long POLLER_ERROR_REPORT_NANOS = 1000000000;
+
+	/**
+	 * Work run on the poller thread with exclusive access to Pixy2
+	 */
+	public interface Task {
+		/**
+		 * Runs task
+		 * 
+		 * @param pixy Pixy2 instance
+		 */
+		public void run(Pixy2 pixy);
+	}
+
+	/**
+	 * Receives each new frame on the poller thread
+	 */
+	public interface FrameListener {
+		/**
+		 * Called when a new frame has been parsed. The frame is reused for the next
+		 * poll and must not be kept.
+		 * 
+		 * @param frame New frame
+		 */
+		public void frameReceived(Pixy2Frame frame);
+	}
+
+	private final Pixy2 pixy;
+	private final Pixy2Actuators actuators;
+
+	private volatile Pixy2Request blocksRequest = Pixy2CCC.CCC_REQUEST_ALL_BLOCKS;
+	private volatile Pixy2Request featuresRequest = null;
+
+	// copy-on-write arrays so the poll cycle iterates without allocating
+	private volatile Task[] tasks = new Task[0];
+	private volatile FrameListener[] listeners = new FrameListener[0];
+	private final ConcurrentLinkedQueue<Task> pending = new ConcurrentLinkedQueue<Task>();
+
+	private final Pixy2Frame work = new Pixy2Frame();
+	private final Pixy2FrameBuffer latest = new Pixy2FrameBuffer();
+
+	private long sequence = 0;
+	private volatile long frameCount = 0;
+	private volatile long errorCount = 0;
+	private volatile long pollNanos = 0;
+	private volatile RuntimeException lastError = null;
+	private long lastErrorReport = 0;
+	private boolean errorReported = false;
+
+	private volatile boolean running = false;
+	private Thread thread = null;
+
+	/**
+	 * Constructs poller for Pixy2, polling all signature blocks by default
+	 * 
+	 * @param pixy Pixy2 instance
+	 */
+	public Pixy2Poller(Pixy2 pixy) {
+		this.pixy = pixy;
+		this.actuators = new Pixy2Actuators(pixy);
+	}
+
+	/**
+	 * Starts poller thread
+	 */
+	public synchronized void start() {
+		if (thread != null)
+			return;
+		running = true;
+		thread = new Thread(this, "Pixy2Poller");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops poller thread and waits for the current cycle to finish
+	 */
+	public synchronized void stop() {
+		if (thread == null)
+			return;
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	/**
+	 * @return Whether poller thread is running
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Poller thread loop
+	 */
+	@Override
+	public void run() {
+		while (running) {
+			boolean received = false;
+			try {
+				received = poll();
+			} catch (RuntimeException e) {
+				errorCount++;
+				lastError = e;
+				reportError(e);
+			}
+			if (!received && running) {
+				// no new frame yet, don't thrash Pixy with requests
+				try {
+					TimeUnit.MICROSECONDS.sleep(POLLER_IDLE_MICROS);
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Prints error at most once per {@link #POLLER_ERROR_REPORT_NANOS}, so a task
+	 * that throws every cycle doesn't flood the console. All errors are still
+	 * counted.
+	 * 
+	 * @param e Error thrown by the poll cycle
+	 */
+	private void reportError(RuntimeException e) {
+		long now = System.nanoTime();
+		if (errorReported && now - lastErrorReport < POLLER_ERROR_REPORT_NANOS)
+			return;
+		errorReported = true;
+		lastErrorReport = now;
+		System.err.println("Pixy2Poller: poll failed, " + errorCount + " errors so far");
+		e.printStackTrace();
+	}
+
+	/**
+	 * Runs one poll cycle on the calling thread: polls for a new frame, notifies
+	 * listeners and runs tasks. Can be called from a robot loop instead of
+	 * starting the poller thread.
+	 * 
+	 * @return Whether a new frame was received
+	 */
+	public boolean poll() {
+		boolean received = false;
+		work.clear();
+		long start = System.nanoTime();
+
+		Pixy2Request blocks = blocksRequest;
+		if (blocks != null) {
+			int res = pixy.ccc.getBlocks(false, blocks, work);
+			if (res >= 0)
+				received = true;
+			else if (res != Pixy2.PIXY_RESULT_BUSY)
+				errorCount++;
+		}
+		Pixy2Request features = featuresRequest;
+		if (features != null) {
+			int res = pixy.line.getFeatures(false, features, work);
+			if (res >= 0)
+				received = true;
+			else if (res != Pixy2.PIXY_RESULT_BUSY)
+				errorCount++;
+		}
+		if (blocks != null || features != null)
+			pollNanos = System.nanoTime() - start;
+
+		if (received) {
+			work.sequence = ++sequence;
+			latest.publish(work);
+			frameCount++;
+			for (FrameListener listener : listeners)
+				listener.frameReceived(work);
+		}
+
+		Task task;
+		while ((task = pending.poll()) != null)
+			task.run(pixy);
+		for (Task t : tasks)
+			t.run(pixy);
+		actuators.run(pixy);
+		return received;
+	}
+
+	/**
+	 * Copies the latest frame without blocking the poller
+	 * 
+	 * @param dest Frame to copy into
+	 * 
+	 * @return Whether a frame has been received yet
+	 */
+	public boolean getLatestFrame(Pixy2Frame dest) {
+		return latest.read(dest);
+	}
+
+	/**
+	 * @return Sequence number of the latest frame, or 0 if none received
+	 */
+	public long getLatestSequence() {
+		return latest.getSequence();
+	}
+
+	/**
+	 * Sets blocks request to poll each cycle
+	 * 
+	 * @param request Pre-encoded blocks request, or null to stop polling blocks
+	 */
+	public void setBlocksRequest(Pixy2Request request) {
+		this.blocksRequest = request;
+	}
+
+	/**
+	 * @return Blocks request polled each cycle, or null if not polling blocks
+	 */
+	public Pixy2Request getBlocksRequest() {
+		return blocksRequest;
+	}
+
+	/**
+	 * Sets line features request to poll each cycle
+	 * 
+	 * @param request Pre-encoded features request, or null to stop polling line
+	 *                features
+	 */
+	public void setFeaturesRequest(Pixy2Request request) {
+		this.featuresRequest = request;
+	}
+
+	/**
+	 * @return Features request polled each cycle, or null if not polling line
+	 *         features
+	 */
+	public Pixy2Request getFeaturesRequest() {
+		return featuresRequest;
+	}
+
+	/**
+	 * Adds task to run every poll cycle
+	 * 
+	 * @param task Task
+	 */
+	public synchronized void addTask(Task task) {
+		Task[] t = Arrays.copyOf(tasks, tasks.length + 1);
+		t[t.length - 1] = task;
+		tasks = t;
+	}
+
+	/**
+	 * Removes task added with {@link #addTask(Task)}
+	 * 
+	 * @param task Task
+	 */
+	public synchronized void removeTask(Task task) {
+		tasks = remove(tasks, task);
+	}
+
+	/**
+	 * Runs task once on the poller thread at the end of the next cycle
+	 * 
+	 * @param task Task
+	 */
+	public void invokeLater(Task task) {
+		pending.add(task);
+	}
+
+	/**
+	 * Adds listener notified of every new frame
+	 * 
+	 * @param listener Frame listener
+	 */
+	public synchronized void addFrameListener(FrameListener listener) {
+		FrameListener[] l = Arrays.copyOf(listeners, listeners.length + 1);
+		l[l.length - 1] = listener;
+		listeners = l;
+	}
+
+	/**
+	 * Removes listener added with {@link #addFrameListener(FrameListener)}
+	 * 
+	 * @param listener Frame listener
+	 */
+	public synchronized void removeFrameListener(FrameListener listener) {
+		listeners = remove(listeners, listener);
+	}
+
+	/**
+	 * Copies array without first occurrence of element
+	 * 
+	 * @param array   Array
+	 * @param element Element to remove
+	 * 
+	 * @return New array, or original array if element is not present
+	 */
+	private static <T> T[] remove(T[] array, T element) {
+		for (int i = 0; i < array.length; i++) {
+			if (array[i] == element) {
+				T[] a = Arrays.copyOf(array, array.length - 1);
+				System.arraycopy(array, i + 1, a, i, array.length - i - 1);
+				return a;
+			}
+		}
+		return array;
+	}
+
+	/**
+	 * @return Write-behind actuators flushed by this poller
+	 */
+	public Pixy2Actuators getActuators() {
+		return actuators;
+	}
+
+	/**
+	 * @return Pixy2 instance
+	 */
+	public Pixy2 getPixy() {
+		return pixy;
+	}
+
+	/**
+	 * @return Number of frames received
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return Number of failed polls and task errors
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return Latest exception thrown by a poll cycle, or null if none
+	 */
+	public RuntimeException getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return Time the requests of the last poll took in nanoseconds, the link
+	 *         round trip latency
+	 */
+	public long getPollNanos() {
+		return pollNanos;
+	}
+
+}
@@ -0,0 +1,209 @@
+package pseudoresonance.pixy2api;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Tiered signature polling with a refresh rate per signature
+ * 
+ * Each of {@link Pixy2CCC#CCC_SIG1} to {@link Pixy2CCC#CCC_SIG7} and
+ * {@link Pixy2CCC#CCC_COLOR_CODES} gets its own refresh rate. Every frame, the
+ * plan sets the {@link Pixy2Poller}'s blocks request to only the signatures
+ * that are due, so fast targets are polled every frame while slow ones are
+ * spread across frames and don't take bus time they don't need. Blocks
+ * received for each signature replace that signature's blocks in a merged
+ * view, which keeps the newest blocks of every signature along with when each
+ * signature was last refreshed.
+ * 
+ * The plan sets the poller's blocks request every frame, so it should not be
+ * combined with a {@link Pixy2QueryPlanner} on the same poller.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2PollingPlan implements Pixy2Poller.FrameListener {
+	public final static int PLAN_SIGNATURES = 8;
+	public final static long PLAN_DEFAULT_FRAME_NANOS = 1000000000L / 60;
+
+	private final Pixy2Poller poller;
+
+	private final long[] periodNanos = new long[PLAN_SIGNATURES];
+	private final long[] nextDue = new long[PLAN_SIGNATURES];
+	private final AtomicLongArray updated = new AtomicLongArray(PLAN_SIGNATURES);
+
+	private final Pixy2Request[] requests = new Pixy2Request[256];
+	private int maxBlocks = 0xff;
+
+	private int requestedSigmap = 0;
+	private long lastFrame = 0;
+	private long framePeriod = PLAN_DEFAULT_FRAME_NANOS;
+
+	private Pixy2Frame merged = new Pixy2Frame();
+	private Pixy2Frame scratch = new Pixy2Frame();
+	private final Pixy2FrameBuffer latest = new Pixy2FrameBuffer();
+
+	private boolean enabled = false;
+
+	/**
+	 * Constructs disabled polling plan with no signatures polled
+	 * 
+	 * @param poller Poller to plan blocks requests for
+	 */
+	public Pixy2PollingPlan(Pixy2Poller poller) {
+		this.poller = poller;
+	}
+
+	/**
+	 * Sets refresh rate of signatures. Rates above the camera framerate poll the
+	 * signatures every frame.
+	 * 
+	 * @param sigmap Sigmap of signatures to set rate for
+	 * @param rate   Refresh rate in Hz, or 0 to stop polling the signatures
+	 */
+	public synchronized void setRate(int sigmap, double rate) {
+		for (int bit = 0; bit < PLAN_SIGNATURES; bit++) {
+			if ((sigmap & (1 << bit)) != 0) {
+				periodNanos[bit] = rate > 0 ? (long) (1e9 / rate) : 0;
+				nextDue[bit] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Sets maximum blocks per request
+	 * 
+	 * @param maxBlocks Maximum blocks to look for
+	 */
+	public synchronized void setMaxBlocks(int maxBlocks) {
+		if (this.maxBlocks == maxBlocks)
+			return;
+		this.maxBlocks = maxBlocks;
+		for (int i = 0; i < requests.length; i++)
+			requests[i] = null;
+	}
+
+	/**
+	 * Starts or stops tiered polling
+	 * 
+	 * @param enabled Whether to poll according to this plan
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		if (this.enabled == enabled)
+			return;
+		this.enabled = enabled;
+		if (enabled) {
+			// first request polls every signature with a rate so the view starts full
+			int sigmap = 0;
+			for (int bit = 0; bit < PLAN_SIGNATURES; bit++)
+				if (periodNanos[bit] > 0)
+					sigmap |= 1 << bit;
+			requestedSigmap = sigmap;
+			poller.setBlocksRequest(getRequest(sigmap));
+			poller.addFrameListener(this);
+		} else
+			poller.removeFrameListener(this);
+	}
+
+	/**
+	 * Merges new blocks and plans the next request, called on the poller thread
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public synchronized void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_BLOCKS) == 0)
+			return;
+		long now = frame.timestamp;
+		if (lastFrame != 0)
+			framePeriod += ((now - lastFrame) - framePeriod) / 8;
+		lastFrame = now;
+
+		// keep blocks of signatures that weren't polled, replace the rest
+		int polled = requestedSigmap;
+		scratch.clear();
+		for (int i = 0; i < merged.blockCount; i++)
+			if ((Pixy2CCC.getSigmapBit(merged.blockSignature[i]) & polled) == 0)
+				scratch.copyBlock(merged, i);
+		for (int i = 0; i < frame.blockCount; i++)
+			if ((Pixy2CCC.getSigmapBit(frame.blockSignature[i]) & polled) != 0)
+				scratch.copyBlock(frame, i);
+		scratch.sequence = frame.sequence;
+		scratch.timestamp = now;
+		scratch.contents = Pixy2Frame.FRAME_BLOCKS;
+		Pixy2Frame swap = merged;
+		merged = scratch;
+		scratch = swap;
+		for (int bit = 0; bit < PLAN_SIGNATURES; bit++)
+			if ((polled & (1 << bit)) != 0)
+				updated.set(bit, now);
+		latest.publish(merged);
+
+		// poll signatures due by the middle of the next frame
+		long next = now + framePeriod / 2;
+		int sigmap = 0;
+		for (int bit = 0; bit < PLAN_SIGNATURES; bit++) {
+			long period = periodNanos[bit];
+			if (period <= 0 || nextDue[bit] - next > 0)
+				continue;
+			sigmap |= 1 << bit;
+			nextDue[bit] += period;
+			if (nextDue[bit] - now < 0)
+				nextDue[bit] = now + period; // fell behind, don't burst to catch up
+		}
+		requestedSigmap = sigmap;
+		poller.setBlocksRequest(getRequest(sigmap));
+	}
+
+	/**
+	 * Gets cached pre-encoded request for a sigmap
+	 * 
+	 * @param sigmap Sigmap
+	 * 
+	 * @return Pre-encoded request
+	 */
+	private Pixy2Request getRequest(int sigmap) {
+		Pixy2Request request = requests[sigmap];
+		if (request == null)
+			request = requests[sigmap] = Pixy2CCC.createBlocksRequest(sigmap, maxBlocks);
+		return request;
+	}
+
+	/**
+	 * Copies the newest blocks of every signature
+	 * 
+	 * @param dest Frame to copy blocks into
+	 * 
+	 * @return Whether a frame has been received yet
+	 */
+	public boolean getBlocks(Pixy2Frame dest) {
+		return latest.read(dest);
+	}
+
+	/**
+	 * Gets when blocks of a signature were last refreshed
+	 * 
+	 * @param signature Block signature, any color code signature for color codes
+	 * 
+	 * @return Time in {@link System#nanoTime()} units, or 0 if never refreshed
+	 */
+	public long getUpdateTime(int signature) {
+		int bit = Integer.numberOfTrailingZeros(Pixy2CCC.getSigmapBit(signature));
+		return bit < PLAN_SIGNATURES ? updated.get(bit) : 0;
+	}
+
+	/**
+	 * Gets how long ago blocks of a signature were last refreshed
+	 * 
+	 * @param signature Block signature, any color code signature for color codes
+	 * 
+	 * @return Age in nanoseconds, or {@link Long#MAX_VALUE} if never refreshed
+	 */
+	public long getAge(int signature) {
+		long time = getUpdateTime(signature);
+		return time == 0 ? Long.MAX_VALUE : System.nanoTime() - time;
+	}
+
+}
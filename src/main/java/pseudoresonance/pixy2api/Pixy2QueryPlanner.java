@@ -0,0 +1,130 @@
+package pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Plans the smallest blocks request that satisfies all registered queries
+ * 
+ * Instead of every consumer polling with {@link Pixy2CCC#CCC_SIG_ALL} and a
+ * large block count, consumers register a {@link Pixy2BlockQuery}. The planner
+ * merges the sigmaps of all queries into one request polled by the
+ * {@link Pixy2Poller}, so Pixy2 only sends signatures somebody reads, and each
+ * frame is fanned back out to the queries on the poller thread. With no queries
+ * registered, blocks are not polled at all.
+ * 
+ * Pixy2 sends the largest blocks of the whole sigmap first, not per signature,
+ * so the block count can only be limited when every query asks for the same
+ * sigmap. Otherwise large blocks of one query's signatures could push out all
+ * blocks of another's, so all blocks of the merged sigmap are requested.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2QueryPlanner implements Pixy2Poller.FrameListener {
+
+	private final Pixy2Poller poller;
+
+	private volatile Pixy2BlockQuery[] queries = new Pixy2BlockQuery[0];
+
+	private int sigmap = 0;
+	private int maxBlocks = 0;
+
+	/**
+	 * Constructs query planner for a poller
+	 * 
+	 * @param poller Poller to plan blocks requests for
+	 */
+	public Pixy2QueryPlanner(Pixy2Poller poller) {
+		this.poller = poller;
+	}
+
+	/**
+	 * Registers query and replans blocks request
+	 * 
+	 * @param query Query
+	 */
+	public synchronized void register(Pixy2BlockQuery query) {
+		Pixy2BlockQuery[] q = Arrays.copyOf(queries, queries.length + 1);
+		q[q.length - 1] = query;
+		if (queries.length == 0)
+			poller.addFrameListener(this);
+		queries = q;
+		plan();
+	}
+
+	/**
+	 * Unregisters query and replans blocks request
+	 * 
+	 * @param query Query
+	 */
+	public synchronized void unregister(Pixy2BlockQuery query) {
+		Pixy2BlockQuery[] q = queries;
+		for (int i = 0; i < q.length; i++) {
+			if (q[i] == query) {
+				Pixy2BlockQuery[] r = Arrays.copyOf(q, q.length - 1);
+				System.arraycopy(q, i + 1, r, i, q.length - i - 1);
+				queries = r;
+				if (r.length == 0)
+					poller.removeFrameListener(this);
+				plan();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Merges all queries into one sigmap and block count and sets the poller's
+	 * blocks request
+	 */
+	private void plan() {
+		int map = 0;
+		for (Pixy2BlockQuery query : queries)
+			map |= query.getSigmap();
+		int max = 0;
+		for (Pixy2BlockQuery query : queries) {
+			if (query.getSigmap() == map)
+				max = Math.max(max, query.getMaxBlocks());
+			else
+				max = Pixy2BlockQuery.QUERY_UNLIMITED; // its blocks may be outranked by other signatures
+		}
+
+		sigmap = map;
+		maxBlocks = max;
+		if (map == 0 || max == 0)
+			poller.setBlocksRequest(null);
+		else
+			poller.setBlocksRequest(Pixy2CCC.createBlocksRequest(map, max));
+	}
+
+	/**
+	 * Fans new frame out to all queries
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_BLOCKS) == 0)
+			return;
+		for (Pixy2BlockQuery query : queries)
+			query.update(frame);
+	}
+
+	/**
+	 * @return Sigmap currently requested
+	 */
+	public synchronized int getSigmap() {
+		return sigmap;
+	}
+
+	/**
+	 * @return Maximum blocks currently requested
+	 */
+	public synchronized int getMaxBlocks() {
+		return maxBlocks;
+	}
+
+}
@@ -0,0 +1,184 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Frame-scoped cache of {@link Pixy2Video#getRGB} samples
+ * 
+ * An RGB sample can't change until Pixy2 captures its next frame, so samples
+ * are cached by coordinates and saturation and reused until the frame clock
+ * ticks over. The clock is derived from the camera framerate reported by
+ * {@link Pixy2#getFPS()}, and can be aligned to received frames with
+ * {@link #sync(long)}. Entries are tagged with the frame they were sampled in,
+ * so invalidating the cache costs nothing. Keys and values are primitives in
+ * a fixed-size open addressing table that evicts on collision, so it never
+ * grows or allocates.
+ * 
+ * Like {@link Pixy2Video}, it must be used from the thread doing Pixy2 I/O,
+ * which is the poller thread while a {@link Pixy2Poller} is running.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2RGBCache {
+	public final static int CACHE_DEFAULT_CAPACITY = 256;
+	public final static int CACHE_DEFAULT_FPS = 60;
+
+	private final static int MAX_PROBES = 8;
+	private final static int EMPTY = -1;
+
+	private final Pixy2 pixy;
+
+	private final int mask;
+	private final int[] keys;
+	private final int[] values;
+	private final long[] frames;
+
+	private final int[] point = new int[2];
+	private final int[] sample = new int[1];
+
+	private long framePeriod = 1000000000L / CACHE_DEFAULT_FPS;
+	private long epoch = System.nanoTime();
+
+	private long hits = 0, misses = 0;
+
+	/**
+	 * Constructs cache holding {@link #CACHE_DEFAULT_CAPACITY} samples
+	 * 
+	 * @param pixy Pixy2 instance
+	 */
+	public Pixy2RGBCache(Pixy2 pixy) {
+		this(pixy, CACHE_DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs cache
+	 * 
+	 * @param pixy     Pixy2 instance
+	 * @param capacity Maximum number of samples, rounded up to a power of 2
+	 */
+	public Pixy2RGBCache(Pixy2 pixy, int capacity) {
+		this.pixy = pixy;
+		int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+		mask = size - 1;
+		keys = new int[size];
+		values = new int[size];
+		frames = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = EMPTY;
+	}
+
+	/**
+	 * Gets framerate from Pixy2 and sets the frame clock to it
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public synchronized int updateFPS() {
+		int fps = pixy.getFPS();
+		if (fps <= 0)
+			return fps < 0 ? fps : Pixy2.PIXY_RESULT_ERROR;
+		framePeriod = 1000000000L / fps;
+		return Pixy2.PIXY_RESULT_OK;
+	}
+
+	/**
+	 * Sets frame clock framerate
+	 * 
+	 * @param fps Frames per second
+	 */
+	public synchronized void setFPS(int fps) {
+		if (fps <= 0)
+			throw new IllegalArgumentException("Framerate must be positive");
+		framePeriod = 1000000000L / fps;
+	}
+
+	/**
+	 * Aligns frame boundaries with the time a frame was received, such as
+	 * {@link Pixy2Frame#getTimestamp()}
+	 * 
+	 * @param timestamp Time in {@link System#nanoTime()} units
+	 */
+	public synchronized void sync(long timestamp) {
+		epoch = timestamp;
+	}
+
+	/**
+	 * @return Current frame number of the frame clock
+	 */
+	public synchronized long getFrame() {
+		return Math.floorDiv(System.nanoTime() - epoch, framePeriod);
+	}
+
+	/**
+	 * Gets average RGB value at 5x5 area around specified coordinates, from the
+	 * cache if sampled already this frame
+	 * 
+	 * @param x        X value
+	 * @param y        Y value
+	 * @param saturate Whether or not to scale all RGB values to maximize the
+	 *                 greatest value at 255
+	 * 
+	 * @return RGB value packed as 0xRRGGBB, or Pixy2 error code
+	 */
+	public synchronized int getRGB(int x, int y, boolean saturate) {
+		long frame = Math.floorDiv(System.nanoTime() - epoch, framePeriod);
+		int key = ((x & 0xffff) << 16) | ((y & 0x7fff) << 1) | (saturate ? 1 : 0);
+		int home = hash(key) & mask;
+		int slot = home;
+		for (int i = 0; i < MAX_PROBES; i++) {
+			int s = (home + i) & mask;
+			if (keys[s] == key) {
+				if (frames[s] == frame) {
+					hits++;
+					return values[s];
+				}
+				slot = s; // stale, resample into same slot
+				break;
+			}
+			if (keys[s] == EMPTY || frames[s] != frame) {
+				slot = s; // free or expired
+				break;
+			}
+		}
+
+		misses++;
+		point[0] = x;
+		point[1] = y;
+		int res = pixy.getVideo().getRGB(point, 1, sample, saturate);
+		if (res != 1 || sample[0] == Pixy2Video.VIDEO_RGB_ERROR)
+			return Pixy2.PIXY_RESULT_ERROR;
+		keys[slot] = key;
+		values[slot] = sample[0];
+		frames[slot] = frame;
+		return sample[0];
+	}
+
+	/**
+	 * Mixes key bits so nearby coordinates spread over the table
+	 * 
+	 * @param key Key
+	 * 
+	 * @return Hash
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return Number of samples served from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of samples read from Pixy2
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+}
@@ -0,0 +1,109 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Immutable, pre-encoded Pixy2 request packet
+ * 
+ * The sync header, type, length and payload are encoded once when the request
+ * is created, so sending it is a single {@link pseudoresonance.links.Link}
+ * write with no per-call encoding. Requests that never change (version, FPS,
+ * resolution, line features, blocks with a fixed sigmap) should be created
+ * once and reused.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public final class Pixy2Request {
+	// Length is one byte in the header, and the whole packet must fit Pixy2's buffer
+	public final static int REQUEST_MAX_PAYLOAD = Math.min(0xff,
+			Pixy2.PIXY_BUFFERSIZE - Pixy2.PIXY_SEND_HEADER_SIZE);
+
+	private final byte[] packet;
+
+	/**
+	 * Constructs pre-encoded request packet
+	 * 
+	 * @param type    Packet type
+	 * @param payload Packet payload
+	 */
+	private Pixy2Request(byte type, byte[] payload) {
+		if (payload.length > REQUEST_MAX_PAYLOAD)
+			throw new IllegalArgumentException("Payload must be at most " + REQUEST_MAX_PAYLOAD + " bytes");
+		packet = new byte[Pixy2.PIXY_SEND_HEADER_SIZE + payload.length];
+		packet[0] = (byte) (Pixy2.PIXY_NO_CHECKSUM_SYNC & 0xff);
+		packet[1] = (byte) ((Pixy2.PIXY_NO_CHECKSUM_SYNC >> 8) & 0xff);
+		packet[2] = type;
+		packet[3] = (byte) payload.length;
+		System.arraycopy(payload, 0, packet, Pixy2.PIXY_SEND_HEADER_SIZE, payload.length);
+	}
+
+	/**
+	 * Creates pre-encoded request packet
+	 * 
+	 * @param type    Packet type
+	 * @param payload Packet payload
+	 * 
+	 * @return Pre-encoded request
+	 */
+	public static Pixy2Request create(byte type, byte... payload) {
+		return new Pixy2Request(type, payload);
+	}
+
+	/**
+	 * Copies encoded packet into buffer
+	 * 
+	 * @param dest   Buffer to copy packet into
+	 * @param offset Offset in buffer to start at
+	 * 
+	 * @return Number of bytes copied
+	 */
+	public int copyTo(byte[] dest, int offset) {
+		System.arraycopy(packet, 0, dest, offset, packet.length);
+		return packet.length;
+	}
+
+	/**
+	 * Gets encoded packet for sending. Must not be modified.
+	 * 
+	 * @return Encoded packet
+	 */
+	byte[] getPacket() {
+		return packet;
+	}
+
+	/**
+	 * @return Packet type
+	 */
+	public byte getType() {
+		return packet[2];
+	}
+
+	/**
+	 * @return Payload length
+	 */
+	public int getPayloadLength() {
+		return packet[3] & 0xff;
+	}
+
+	/**
+	 * Gets payload byte
+	 * 
+	 * @param index Index in payload
+	 * 
+	 * @return Payload byte at index
+	 */
+	public byte getPayload(int index) {
+		return packet[Pixy2.PIXY_SEND_HEADER_SIZE + index];
+	}
+
+	/**
+	 * @return Total packet length including header
+	 */
+	public int getPacketLength() {
+		return packet.length;
+	}
+
+}
@@ -0,0 +1,266 @@
+package pseudoresonance.pixy2api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Reads frames published to shared memory by a {@link Pixy2SharedFrameWriter}
+ * in another process on the same host
+ * 
+ * Reads never block or slow down the writer. A copy that overlapped a write to
+ * the same slot is detected by the slot's seqlock version and retried, so a
+ * reader never sees a torn frame. Besides the latest frame, the frames still
+ * in the ring can be read by their position in the stream, so a reader that
+ * falls behind by less than a ring's worth of frames doesn't miss any.
+ * 
+ * Each reader should only be used by one thread.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2SharedFrameReader {
+	public final static int SHARED_READ_ATTEMPTS = 16;
+
+	private final File file;
+
+	private RandomAccessFile raf = null;
+	private MappedByteBuffer buffer = null;
+	private int slots = 0;
+
+	/**
+	 * Constructs reader
+	 * 
+	 * @param file File mapped by the writer
+	 */
+	public Pixy2SharedFrameReader(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Maps the file
+	 * 
+	 * @return {@link Pixy2#PIXY_RESULT_OK} if successful,
+	 *         {@link Pixy2#PIXY_RESULT_BUSY} if no writer has set it up yet,
+	 *         otherwise {@link Pixy2#PIXY_RESULT_ERROR}
+	 */
+	public int open() {
+		close();
+		try {
+			if (!file.exists())
+				return Pixy2.PIXY_RESULT_BUSY;
+			raf = new RandomAccessFile(file, "r");
+			if (raf.length() < Pixy2SharedFrameWriter.HEADER_SIZE) {
+				close();
+				return Pixy2.PIXY_RESULT_BUSY;
+			}
+			MappedByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			b.order(ByteOrder.nativeOrder());
+			if (b.getInt(Pixy2SharedFrameWriter.HEADER_MAGIC) != Pixy2SharedFrameWriter.SHARED_MAGIC) {
+				close();
+				return Pixy2.PIXY_RESULT_BUSY;
+			}
+			Pixy2Fences.loadFence();
+			int n = b.getInt(Pixy2SharedFrameWriter.HEADER_SLOTS);
+			long size = Pixy2SharedFrameWriter.HEADER_SIZE + (long) n * Pixy2SharedFrameWriter.SLOT_SIZE;
+			if (b.getInt(Pixy2SharedFrameWriter.HEADER_VERSION) != Pixy2SharedFrameWriter.SHARED_VERSION
+					|| b.getInt(Pixy2SharedFrameWriter.HEADER_SLOT_SIZE) != Pixy2SharedFrameWriter.SLOT_SIZE || n < 1
+					|| size > b.capacity()) {
+				close();
+				return Pixy2.PIXY_RESULT_ERROR;
+			}
+			slots = n;
+			buffer = b;
+			return Pixy2.PIXY_RESULT_OK;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+	}
+
+	/**
+	 * Closes the file
+	 */
+	public void close() {
+		buffer = null; // unmapped once collected
+		slots = 0;
+		if (raf == null)
+			return;
+		try {
+			raf.close();
+		} catch (IOException e) {
+		}
+		raf = null;
+	}
+
+	/**
+	 * @return Number of frames published since the writer opened the file, or 0
+	 *         if not open
+	 */
+	public long getCount() {
+		MappedByteBuffer b = buffer;
+		if (b == null)
+			return 0;
+		long count = b.getLong(Pixy2SharedFrameWriter.HEADER_COUNT);
+		Pixy2Fences.loadFence();
+		return count;
+	}
+
+	/**
+	 * Copies the latest frame
+	 * 
+	 * @param dest Frame to copy into
+	 * 
+	 * @return Whether a frame has been published yet and was copied
+	 */
+	public boolean getLatestFrame(Pixy2Frame dest) {
+		for (int attempt = 0; attempt < SHARED_READ_ATTEMPTS; attempt++) {
+			long count = getCount();
+			if (count == 0)
+				return false;
+			if (read(count - 1, dest))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Copies a frame still in the ring
+	 * 
+	 * @param position Position of frame in the stream, from 0 to
+	 *                 {@link #getCount()} - 1
+	 * @param dest     Frame to copy into
+	 * 
+	 * @return Whether the frame was copied, false if it was not published yet
+	 *         or already overwritten
+	 */
+	public boolean getFrame(long position, Pixy2Frame dest) {
+		long count = getCount();
+		if (position < 0 || position >= count || count - position > slots)
+			return false;
+		for (int attempt = 0; attempt < SHARED_READ_ATTEMPTS; attempt++) {
+			if (read(position, dest))
+				return true;
+			if (getCount() - position > slots)
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Copies slot of a frame, checking that it still holds that frame and wasn't
+	 * written meanwhile
+	 * 
+	 * @param position Position of frame in the stream
+	 * @param dest     Frame to copy into
+	 * 
+	 * @return Whether a consistent copy was made
+	 */
+	private boolean read(long position, Pixy2Frame dest) {
+		MappedByteBuffer b = buffer;
+		if (b == null)
+			return false;
+		int base = Pixy2SharedFrameWriter.HEADER_SIZE + (int) (position % slots) * Pixy2SharedFrameWriter.SLOT_SIZE;
+		long version = b.getLong(base + Pixy2SharedFrameWriter.SLOT_VERSION);
+		if ((version & 1) != 0)
+			return false;
+		Pixy2Fences.loadFence();
+		// the slot may have been reused for a newer frame since the count was read
+		if (b.getLong(base + Pixy2SharedFrameWriter.SLOT_POSITION) != position)
+			return false;
+		copy(b, base, dest);
+		Pixy2Fences.loadFence();
+		if (b.getLong(base + Pixy2SharedFrameWriter.SLOT_VERSION) != version)
+			return false;
+		if ((dest.contents & Pixy2Frame.FRAME_BLOCKS) != 0)
+			dest.indexBlocks();
+		return true;
+	}
+
+	/**
+	 * Copies frame fields out of a slot. Counts are clamped since a torn copy
+	 * may read garbage, which the version check then rejects.
+	 * 
+	 * @param b    Mapped file
+	 * @param base Slot offset
+	 * @param dest Frame to copy into
+	 */
+	private static void copy(MappedByteBuffer b, int base, Pixy2Frame dest) {
+		dest.clear();
+		dest.sequence = b.getLong(base + Pixy2SharedFrameWriter.SLOT_SEQUENCE);
+		dest.timestamp = b.getLong(base + Pixy2SharedFrameWriter.SLOT_TIMESTAMP);
+		dest.contents = b.getInt(base + Pixy2SharedFrameWriter.SLOT_CONTENTS);
+		dest.lineFeatures = b.getInt(base + Pixy2SharedFrameWriter.SLOT_LINE_FEATURES);
+		int blocks = clamp(b.getInt(base + Pixy2SharedFrameWriter.SLOT_BLOCK_COUNT), Pixy2Frame.FRAME_MAX_BLOCKS);
+		int vectors = clamp(b.getInt(base + Pixy2SharedFrameWriter.SLOT_VECTOR_COUNT), Pixy2Frame.FRAME_MAX_VECTORS);
+		int intersections = clamp(b.getInt(base + Pixy2SharedFrameWriter.SLOT_INTERSECTION_COUNT),
+				Pixy2Frame.FRAME_MAX_INTERSECTIONS);
+		int barcodes = clamp(b.getInt(base + Pixy2SharedFrameWriter.SLOT_BARCODE_COUNT),
+				Pixy2Frame.FRAME_MAX_BARCODES);
+
+		int o = base + Pixy2SharedFrameWriter.SLOT_BLOCKS;
+		for (int i = 0; i < blocks; i++, o += 32) {
+			dest.blockSignature[i] = b.getInt(o);
+			dest.blockX[i] = b.getInt(o + 4);
+			dest.blockY[i] = b.getInt(o + 8);
+			dest.blockWidth[i] = b.getInt(o + 12);
+			dest.blockHeight[i] = b.getInt(o + 16);
+			dest.blockAngle[i] = b.getInt(o + 20);
+			dest.blockIndex[i] = b.getInt(o + 24);
+			dest.blockAge[i] = b.getInt(o + 28);
+		}
+		dest.blockCount = blocks;
+		o = base + Pixy2SharedFrameWriter.SLOT_VECTORS;
+		for (int i = 0; i < vectors; i++, o += 24) {
+			dest.vectorX0[i] = b.getInt(o);
+			dest.vectorY0[i] = b.getInt(o + 4);
+			dest.vectorX1[i] = b.getInt(o + 8);
+			dest.vectorY1[i] = b.getInt(o + 12);
+			dest.vectorIndex[i] = b.getInt(o + 16);
+			dest.vectorFlags[i] = b.getInt(o + 20);
+		}
+		dest.vectorCount = vectors;
+		o = base + Pixy2SharedFrameWriter.SLOT_INTERSECTIONS;
+		for (int i = 0; i < intersections; i++) {
+			dest.intersectionX[i] = b.getInt(o);
+			dest.intersectionY[i] = b.getInt(o + 4);
+			dest.intersectionNumber[i] = b.getInt(o + 8);
+			o += 12;
+			for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++, o += 8) {
+				int k = i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l;
+				dest.intersectionLineIndex[k] = b.getInt(o);
+				dest.intersectionLineAngle[k] = (short) b.getInt(o + 4);
+			}
+		}
+		dest.intersectionCount = intersections;
+		o = base + Pixy2SharedFrameWriter.SLOT_BARCODES;
+		for (int i = 0; i < barcodes; i++, o += 16) {
+			dest.barcodeX[i] = b.getInt(o);
+			dest.barcodeY[i] = b.getInt(o + 4);
+			dest.barcodeFlags[i] = b.getInt(o + 8);
+			dest.barcodeCode[i] = b.getInt(o + 12);
+		}
+		dest.barcodeCount = barcodes;
+	}
+
+	/**
+	 * Clamps count read from a slot to an array size
+	 * 
+	 * @param count Count
+	 * @param max   Array size
+	 * 
+	 * @return Count between 0 and max
+	 */
+	private static int clamp(int count, int max) {
+		return count < 0 ? 0 : count > max ? max : count;
+	}
+
+}
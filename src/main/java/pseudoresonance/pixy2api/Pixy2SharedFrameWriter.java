@@ -0,0 +1,250 @@
+package pseudoresonance.pixy2api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Publishes frames to other processes on the same host through shared memory
+ * 
+ * Frames are copied field by field into a memory-mapped file, such as one in
+ * /dev/shm on Linux, holding a ring of frame slots. Each slot is guarded by a
+ * seqlock: its version is odd while the slot is being written, and readers
+ * retry if the version changed while they copied the slot, so the single
+ * writer never waits for readers and any number of {@link Pixy2SharedFrameReader}s
+ * in other processes read without locks, sockets or serialization. With
+ * several slots a reader copying one frame is not disturbed until the writer
+ * has gone all the way around the ring. Each slot also records the position
+ * of its frame in the stream, so a reader asking for an old position can tell
+ * that the slot has since been reused for a newer frame.
+ * 
+ * Mapped memory is read and written with plain accesses, so the seqlock is
+ * ordered with explicit fences from {@link Pixy2Fences}. The writer puts a
+ * store fence between the odd version and the frame data, and between the
+ * frame data and the even version. Readers put a load fence between the first
+ * version check and the data, and between the data and the second version
+ * check. A volatile field write would only be a release, which lets later
+ * plain loads move before it.
+ * 
+ * Runs on the {@link Pixy2Poller} thread as a frame listener, or frames can be
+ * published directly with {@link #publish(Pixy2Frame)} from one thread.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2SharedFrameWriter implements Pixy2Poller.FrameListener {
+	public final static int SHARED_DEFAULT_SLOTS = 8;
+	public final static int SHARED_MAGIC = 0x50583246;
+	public final static int SHARED_VERSION = 2;
+
+	// File header, write count on its own cache line
+	final static int HEADER_MAGIC = 0;
+	final static int HEADER_VERSION = 4;
+	final static int HEADER_SLOTS = 8;
+	final static int HEADER_SLOT_SIZE = 12;
+	final static int HEADER_COUNT = 64;
+	final static int HEADER_SIZE = 128;
+
+	// Slot layout
+	final static int SLOT_VERSION = 0;
+	final static int SLOT_POSITION = 8;
+	final static int SLOT_SEQUENCE = 16;
+	final static int SLOT_TIMESTAMP = 24;
+	final static int SLOT_CONTENTS = 32;
+	final static int SLOT_LINE_FEATURES = 36;
+	final static int SLOT_BLOCK_COUNT = 40;
+	final static int SLOT_VECTOR_COUNT = 44;
+	final static int SLOT_INTERSECTION_COUNT = 48;
+	final static int SLOT_BARCODE_COUNT = 52;
+	final static int SLOT_BLOCKS = 56;
+	final static int SLOT_VECTORS = SLOT_BLOCKS + Pixy2Frame.FRAME_MAX_BLOCKS * 8 * 4;
+	final static int SLOT_INTERSECTIONS = SLOT_VECTORS + Pixy2Frame.FRAME_MAX_VECTORS * 6 * 4;
+	final static int SLOT_BARCODES = SLOT_INTERSECTIONS
+			+ Pixy2Frame.FRAME_MAX_INTERSECTIONS * (3 + 2 * Pixy2Line.LINE_MAX_INTERSECTION_LINES) * 4;
+	final static int SLOT_SIZE = (SLOT_BARCODES + Pixy2Frame.FRAME_MAX_BARCODES * 4 * 4 + 63) & ~63;
+
+	private final File file;
+	private final int slots;
+
+	private RandomAccessFile raf = null;
+	private volatile MappedByteBuffer buffer = null;
+	private volatile long count = 0;
+
+	/**
+	 * Constructs writer with {@link #SHARED_DEFAULT_SLOTS} slots
+	 * 
+	 * @param file File to map, such as one in /dev/shm
+	 */
+	public Pixy2SharedFrameWriter(File file) {
+		this(file, SHARED_DEFAULT_SLOTS);
+	}
+
+	/**
+	 * Constructs writer
+	 * 
+	 * @param file  File to map, such as one in /dev/shm
+	 * @param slots Number of frames kept in the ring
+	 */
+	public Pixy2SharedFrameWriter(File file, int slots) {
+		if (slots < 1)
+			throw new IllegalArgumentException("Slots must be at least 1");
+		this.file = file;
+		this.slots = slots;
+	}
+
+	/**
+	 * Creates or reuses the file and maps it. The file is never shrunk, since
+	 * that would crash readers that still have it mapped.
+	 * 
+	 * @return {@link Pixy2#PIXY_RESULT_OK} if successful, otherwise
+	 *         {@link Pixy2#PIXY_RESULT_ERROR}
+	 */
+	public synchronized int open() {
+		if (buffer != null)
+			return Pixy2.PIXY_RESULT_OK;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			long size = HEADER_SIZE + (long) slots * SLOT_SIZE;
+			if (raf.length() < size)
+				raf.setLength(size);
+			MappedByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			b.order(ByteOrder.nativeOrder());
+			// readers ignore the file until the magic is back
+			b.putInt(HEADER_MAGIC, 0);
+			Pixy2Fences.storeFence();
+			b.putInt(HEADER_VERSION, SHARED_VERSION);
+			b.putInt(HEADER_SLOTS, slots);
+			b.putInt(HEADER_SLOT_SIZE, SLOT_SIZE);
+			b.putLong(HEADER_COUNT, 0);
+			Pixy2Fences.storeFence();
+			b.putInt(HEADER_MAGIC, SHARED_MAGIC);
+			count = 0;
+			buffer = b;
+			return Pixy2.PIXY_RESULT_OK;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+	}
+
+	/**
+	 * Unmaps and closes the file, leaving the last frames in it
+	 */
+	public synchronized void close() {
+		buffer = null; // unmapped once collected
+		if (raf == null)
+			return;
+		try {
+			raf.close();
+		} catch (IOException e) {
+		}
+		raf = null;
+	}
+
+	/**
+	 * Publishes new frame, called on the poller thread
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		publish(frame);
+	}
+
+	/**
+	 * Copies frame into the next slot of the ring. Must only be called by one
+	 * thread.
+	 * 
+	 * @param frame Frame to publish
+	 */
+	public void publish(Pixy2Frame frame) {
+		MappedByteBuffer b = buffer;
+		if (b == null)
+			return;
+		int base = HEADER_SIZE + (int) (count % slots) * SLOT_SIZE;
+		// odd while writing, even if left odd by a writer that died mid-write
+		long version = (b.getLong(base + SLOT_VERSION) + 1) | 1;
+		b.putLong(base + SLOT_VERSION, version);
+		Pixy2Fences.storeFence();
+		b.putLong(base + SLOT_POSITION, count);
+		write(b, base, frame);
+		Pixy2Fences.storeFence();
+		b.putLong(base + SLOT_VERSION, version + 1);
+		Pixy2Fences.storeFence();
+		b.putLong(HEADER_COUNT, ++count);
+	}
+
+	/**
+	 * Writes frame fields into a slot
+	 * 
+	 * @param b     Mapped file
+	 * @param base  Slot offset
+	 * @param frame Frame
+	 */
+	private static void write(MappedByteBuffer b, int base, Pixy2Frame frame) {
+		b.putLong(base + SLOT_SEQUENCE, frame.sequence);
+		b.putLong(base + SLOT_TIMESTAMP, frame.timestamp);
+		b.putInt(base + SLOT_CONTENTS, frame.contents);
+		b.putInt(base + SLOT_LINE_FEATURES, frame.lineFeatures);
+		b.putInt(base + SLOT_BLOCK_COUNT, frame.blockCount);
+		b.putInt(base + SLOT_VECTOR_COUNT, frame.vectorCount);
+		b.putInt(base + SLOT_INTERSECTION_COUNT, frame.intersectionCount);
+		b.putInt(base + SLOT_BARCODE_COUNT, frame.barcodeCount);
+
+		int o = base + SLOT_BLOCKS;
+		for (int i = 0; i < frame.blockCount; i++, o += 32) {
+			b.putInt(o, frame.blockSignature[i]);
+			b.putInt(o + 4, frame.blockX[i]);
+			b.putInt(o + 8, frame.blockY[i]);
+			b.putInt(o + 12, frame.blockWidth[i]);
+			b.putInt(o + 16, frame.blockHeight[i]);
+			b.putInt(o + 20, frame.blockAngle[i]);
+			b.putInt(o + 24, frame.blockIndex[i]);
+			b.putInt(o + 28, frame.blockAge[i]);
+		}
+		o = base + SLOT_VECTORS;
+		for (int i = 0; i < frame.vectorCount; i++, o += 24) {
+			b.putInt(o, frame.vectorX0[i]);
+			b.putInt(o + 4, frame.vectorY0[i]);
+			b.putInt(o + 8, frame.vectorX1[i]);
+			b.putInt(o + 12, frame.vectorY1[i]);
+			b.putInt(o + 16, frame.vectorIndex[i]);
+			b.putInt(o + 20, frame.vectorFlags[i]);
+		}
+		o = base + SLOT_INTERSECTIONS;
+		for (int i = 0; i < frame.intersectionCount; i++) {
+			b.putInt(o, frame.intersectionX[i]);
+			b.putInt(o + 4, frame.intersectionY[i]);
+			b.putInt(o + 8, frame.intersectionNumber[i]);
+			o += 12;
+			for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++, o += 8) {
+				int k = i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l;
+				b.putInt(o, frame.intersectionLineIndex[k]);
+				b.putInt(o + 4, frame.intersectionLineAngle[k]);
+			}
+		}
+		o = base + SLOT_BARCODES;
+		for (int i = 0; i < frame.barcodeCount; i++, o += 16) {
+			b.putInt(o, frame.barcodeX[i]);
+			b.putInt(o + 4, frame.barcodeY[i]);
+			b.putInt(o + 8, frame.barcodeFlags[i]);
+			b.putInt(o + 12, frame.barcodeCode[i]);
+		}
+	}
+
+	/**
+	 * @return Number of frames published since opened
+	 */
+	public long getCount() {
+		return count;
+	}
+
+}
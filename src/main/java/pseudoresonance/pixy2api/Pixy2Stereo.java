@@ -0,0 +1,285 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Stereo triangulation of blocks seen by two Pixy2 cameras
+ * 
+ * Each camera has its own calibrated {@link Pixy2CameraModel} with its mount
+ * pose, so a block becomes a ray from that camera in robot coordinates. Blocks
+ * of the same signature can only be the same target if their rays nearly
+ * intersect, which is the epipolar constraint, so pairs are scored by the gap
+ * between their rays relative to range and matched greedily, best first. Each
+ * match gives a 3D target position at the midpoint of the rays' closest
+ * approach. Frames can be taken from two {@link Pixy2FrameHistory} to align
+ * them in time. All work is in preallocated arrays, bounded by the maximum
+ * number of blocks per frame.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2Stereo {
+	public final static double STEREO_DEFAULT_TOLERANCE = 0.02;
+	public final static long STEREO_DEFAULT_MAX_SKEW = 5000000L;
+
+	private final static int MAX_PAIRS = Pixy2Frame.FRAME_MAX_BLOCKS * Pixy2Frame.FRAME_MAX_BLOCKS;
+
+	private final Pixy2CameraModel leftModel, rightModel;
+
+	private double tolerance = STEREO_DEFAULT_TOLERANCE;
+	private long maxSkew = STEREO_DEFAULT_MAX_SKEW;
+
+	private final float[] leftYaw = new float[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final float[] leftPitch = new float[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final float[] rightYaw = new float[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final float[] rightPitch = new float[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final double[] pairCost = new double[MAX_PAIRS];
+	private final double[] pairX = new double[MAX_PAIRS];
+	private final double[] pairY = new double[MAX_PAIRS];
+	private final double[] pairZ = new double[MAX_PAIRS];
+	private final boolean[] leftUsed = new boolean[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final boolean[] rightUsed = new boolean[Pixy2Frame.FRAME_MAX_BLOCKS];
+
+	private final Pixy2Frame leftFrame = new Pixy2Frame();
+	private final Pixy2Frame rightFrame = new Pixy2Frame();
+
+	private int targetCount = 0;
+	private long timestamp = 0;
+	private final int[] targetSignature = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] targetLeft = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final int[] targetRight = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final double[] targetX = new double[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final double[] targetY = new double[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final double[] targetZ = new double[Pixy2Frame.FRAME_MAX_BLOCKS];
+	private final double[] targetError = new double[Pixy2Frame.FRAME_MAX_BLOCKS];
+
+	/**
+	 * Constructs stereo pair from two built camera models
+	 * 
+	 * @param leftModel  Model of first camera
+	 * @param rightModel Model of second camera
+	 */
+	public Pixy2Stereo(Pixy2CameraModel leftModel, Pixy2CameraModel rightModel) {
+		this.leftModel = leftModel;
+		this.rightModel = rightModel;
+	}
+
+	/**
+	 * Sets how far apart the rays of a matched pair may pass
+	 * 
+	 * @param tolerance Gap between rays divided by range, about the angle in
+	 *                  radians
+	 */
+	public synchronized void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Sets how far apart in time two frames may be captured and still be matched
+	 * 
+	 * @param maxSkew Time in nanoseconds
+	 */
+	public synchronized void setMaxSkew(long maxSkew) {
+		this.maxSkew = maxSkew;
+	}
+
+	/**
+	 * Triangulates targets from both cameras' frames at a given time
+	 * 
+	 * @param left  History of first camera
+	 * @param right History of second camera
+	 * @param time  Time in {@link System#nanoTime()} units
+	 * 
+	 * @return Number of targets, or -1 if either history doesn't reach back to
+	 *         the time
+	 */
+	public synchronized int triangulate(Pixy2FrameHistory left, Pixy2FrameHistory right, long time) {
+		if (!left.getFrame(time, leftFrame) || !right.getFrame(time, rightFrame))
+			return -1;
+		return triangulate(leftFrame, rightFrame);
+	}
+
+	/**
+	 * Triangulates targets from both cameras' frames
+	 * 
+	 * @param left  Frame from first camera
+	 * @param right Frame from second camera
+	 * 
+	 * @return Number of targets, or -1 if the frames were captured too far apart
+	 */
+	public synchronized int triangulate(Pixy2Frame left, Pixy2Frame right) {
+		targetCount = 0;
+		long skew = left.timestamp - right.timestamp;
+		if (skew > maxSkew || -skew > maxSkew)
+			return -1;
+		timestamp = left.timestamp + (right.timestamp - left.timestamp) / 2;
+
+		int nl = leftModel.getBlockAngles(left, leftYaw, leftPitch);
+		int nr = rightModel.getBlockAngles(right, rightYaw, rightPitch);
+		double lx = leftModel.getMountX(), ly = leftModel.getMountY(), lz = leftModel.getMountHeight();
+		double rx = rightModel.getMountX(), ry = rightModel.getMountY(), rz = rightModel.getMountHeight();
+		double wx = lx - rx, wy = ly - ry, wz = lz - rz;
+
+		// score every same-signature pair by how nearly their rays intersect
+		for (int i = 0; i < nl; i++) {
+			leftUsed[i] = false;
+			double cp = Math.cos(leftPitch[i]);
+			double ax = cp * Math.cos(leftYaw[i]), ay = cp * Math.sin(leftYaw[i]), az = Math.sin(leftPitch[i]);
+			for (int j = 0; j < nr; j++) {
+				int p = i * Pixy2Frame.FRAME_MAX_BLOCKS + j;
+				pairCost[p] = Double.POSITIVE_INFINITY;
+				if (left.blockSignature[i] != right.blockSignature[j])
+					continue;
+				double cq = Math.cos(rightPitch[j]);
+				double bx = cq * Math.cos(rightYaw[j]), by = cq * Math.sin(rightYaw[j]), bz = Math.sin(rightPitch[j]);
+				double b = ax * bx + ay * by + az * bz;
+				double d = ax * wx + ay * wy + az * wz;
+				double e = bx * wx + by * wy + bz * wz;
+				double denom = 1 - b * b;
+				if (denom < 1e-9)
+					continue; // parallel rays
+				double s = (b * e - d) / denom;
+				double t = (e - b * d) / denom;
+				if (s <= 0 || t <= 0)
+					continue; // behind a camera
+				double px = lx + ax * s, py = ly + ay * s, pz = lz + az * s;
+				double qx = rx + bx * t, qy = ry + by * t, qz = rz + bz * t;
+				double gx = px - qx, gy = py - qy, gz = pz - qz;
+				double cost = Math.sqrt(gx * gx + gy * gy + gz * gz) / Math.min(s, t);
+				if (cost > tolerance)
+					continue;
+				pairCost[p] = cost;
+				pairX[p] = (px + qx) / 2;
+				pairY[p] = (py + qy) / 2;
+				pairZ[p] = (pz + qz) / 2;
+			}
+		}
+		for (int j = 0; j < nr; j++)
+			rightUsed[j] = false;
+
+		// greedy assignment, best pair first
+		while (targetCount < Pixy2Frame.FRAME_MAX_BLOCKS) {
+			int best = -1;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < nl; i++) {
+				if (leftUsed[i])
+					continue;
+				for (int j = 0; j < nr; j++) {
+					int p = i * Pixy2Frame.FRAME_MAX_BLOCKS + j;
+					if (!rightUsed[j] && pairCost[p] < bestCost) {
+						best = p;
+						bestCost = pairCost[p];
+					}
+				}
+			}
+			if (best < 0)
+				break;
+			int i = best / Pixy2Frame.FRAME_MAX_BLOCKS, j = best % Pixy2Frame.FRAME_MAX_BLOCKS;
+			leftUsed[i] = rightUsed[j] = true;
+			int n = targetCount++;
+			targetSignature[n] = left.blockSignature[i];
+			targetLeft[n] = i;
+			targetRight[n] = j;
+			targetX[n] = pairX[best];
+			targetY[n] = pairY[best];
+			targetZ[n] = pairZ[best];
+			targetError[n] = bestCost;
+		}
+		return targetCount;
+	}
+
+	/**
+	 * @return Number of targets from the last triangulation
+	 */
+	public synchronized int getTargetCount() {
+		return targetCount;
+	}
+
+	/**
+	 * @return Time targets of the last triangulation were seen in
+	 *         {@link System#nanoTime()} units
+	 */
+	public synchronized long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets signature of a target
+	 * 
+	 * @param i Target number
+	 * 
+	 * @return Block signature
+	 */
+	public synchronized int getSignature(int i) {
+		return targetSignature[i];
+	}
+
+	/**
+	 * Gets block number of a target in the first camera's frame
+	 * 
+	 * @param i Target number
+	 * 
+	 * @return Block number
+	 */
+	public synchronized int getLeftBlock(int i) {
+		return targetLeft[i];
+	}
+
+	/**
+	 * Gets block number of a target in the second camera's frame
+	 * 
+	 * @param i Target number
+	 * 
+	 * @return Block number
+	 */
+	public synchronized int getRightBlock(int i) {
+		return targetRight[i];
+	}
+
+	/**
+	 * Gets forward position of a target
+	 * 
+	 * @param i Target number
+	 * 
+	 * @return Distance forward of robot origin
+	 */
+	public synchronized double getX(int i) {
+		return targetX[i];
+	}
+
+	/**
+	 * Gets sideways position of a target
+	 * 
+	 * @param i Target number
+	 * 
+	 * @return Distance left of robot origin
+	 */
+	public synchronized double getY(int i) {
+		return targetY[i];
+	}
+
+	/**
+	 * Gets height of a target
+	 * 
+	 * @param i Target number
+	 * 
+	 * @return Height above ground
+	 */
+	public synchronized double getZ(int i) {
+		return targetZ[i];
+	}
+
+	/**
+	 * Gets how nearly the rays of a target intersected
+	 * 
+	 * @param i Target number
+	 * 
+	 * @return Gap between rays divided by range
+	 */
+	public synchronized double getError(int i) {
+		return targetError[i];
+	}
+
+}
@@ -0,0 +1,314 @@
+package pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * NetworkTables telemetry publisher for Pixy2
+ * 
+ * Publishes the latest frame of a {@link Pixy2Poller} from its own thread at
+ * a limited rate, so dashboards see live vision data without loading the
+ * robot loop or the poller. Each kind of data is packed into one entry
+ * instead of one entry per field, and entries are only written when their
+ * contents changed.
+ * 
+ * Entries:
+ * "Blocks" double array, 8 values per block: signature, x, y, width, height,
+ * angle, index and age.
+ * "Line" raw, line features in Pixy2's wire layout: vectors, intersections
+ * and barcodes, each as type, length and data.
+ * "Status" double array: measured frame rate, link latency in milliseconds,
+ * poller error count and frame count.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2Telemetry implements Runnable {
+	public final static double TELEMETRY_DEFAULT_RATE = 10;
+	public final static String TELEMETRY_DEFAULT_TABLE = "Pixy2";
+	public final static long TELEMETRY_ERROR_REPORT_NANOS = 1000000000;
+
+	public final static int TELEMETRY_BLOCK_VALUES = 8;
+
+	private final static int STATUS_VALUES = 4;
+	private final static int LINE_BUFFERSIZE = Pixy2.PIXY_BUFFERSIZE;
+
+	private final Pixy2Poller poller;
+	private final NetworkTableInstance instance;
+	private final NetworkTableEntry blocksEntry, lineEntry, statusEntry;
+
+	private volatile long periodNanos = (long) (1e9 / TELEMETRY_DEFAULT_RATE);
+
+	private final Pixy2Frame frame = new Pixy2Frame();
+	private final double[] blocks = new double[Pixy2Frame.FRAME_MAX_BLOCKS * TELEMETRY_BLOCK_VALUES];
+	private double[] lastBlocks = null;
+	private final byte[] line = new byte[LINE_BUFFERSIZE];
+	private byte[] lastLine = null;
+	private final double[] status = new double[STATUS_VALUES];
+	private double[] lastStatus = null;
+
+	private long lastSequence = -1;
+	private long lastFrameCount = 0, lastTime = 0;
+	private double fps = 0;
+
+	private long errorCount = 0;
+	private long lastErrorReport = 0;
+
+	private volatile boolean running = false;
+	private Thread thread = null;
+
+	/**
+	 * Constructs telemetry publisher writing to table
+	 * {@link #TELEMETRY_DEFAULT_TABLE} of the default NetworkTables instance
+	 * 
+	 * @param poller Poller to publish frames of
+	 */
+	public Pixy2Telemetry(Pixy2Poller poller) {
+		this(poller, NetworkTableInstance.getDefault().getTable(TELEMETRY_DEFAULT_TABLE));
+	}
+
+	/**
+	 * Constructs telemetry publisher
+	 * 
+	 * @param poller Poller to publish frames of
+	 * @param table  Table to write entries to
+	 */
+	public Pixy2Telemetry(Pixy2Poller poller, NetworkTable table) {
+		this.poller = poller;
+		this.instance = table.getInstance();
+		this.blocksEntry = table.getEntry("Blocks");
+		this.lineEntry = table.getEntry("Line");
+		this.statusEntry = table.getEntry("Status");
+	}
+
+	/**
+	 * Sets how often telemetry is published
+	 * 
+	 * @param rate Updates per second
+	 */
+	public void setRate(double rate) {
+		if (rate <= 0)
+			throw new IllegalArgumentException("Rate must be positive");
+		this.periodNanos = (long) (1e9 / rate);
+	}
+
+	/**
+	 * Starts publisher thread
+	 */
+	public synchronized void start() {
+		if (thread != null)
+			return;
+		running = true;
+		thread = new Thread(this, "Pixy2Telemetry");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Stops publisher thread
+	 */
+	public synchronized void stop() {
+		if (thread == null)
+			return;
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	/**
+	 * Publisher thread loop
+	 */
+	@Override
+	public void run() {
+		while (running) {
+			long start = System.nanoTime();
+			try {
+				publish();
+			} catch (RuntimeException e) {
+				// don't flood the console if every publish fails
+				if (errorCount++ == 0 || start - lastErrorReport >= TELEMETRY_ERROR_REPORT_NANOS) {
+					lastErrorReport = start;
+					System.err.println("Pixy2Telemetry: publish failed, " + errorCount + " errors so far");
+					e.printStackTrace();
+				}
+			}
+			long sleep = periodNanos - (System.nanoTime() - start);
+			if (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publishes entries that changed since the last call. Called by the publisher
+	 * thread, or can be called periodically instead of starting it.
+	 */
+	public void publish() {
+		long now = System.nanoTime();
+		long frames = poller.getFrameCount();
+		if (lastTime != 0 && now > lastTime)
+			fps = (frames - lastFrameCount) * 1e9 / (now - lastTime);
+		lastTime = now;
+		lastFrameCount = frames;
+
+		boolean changed = false;
+		if (poller.getLatestSequence() != lastSequence && poller.getLatestFrame(frame)) {
+			lastSequence = frame.sequence;
+			if ((frame.contents & Pixy2Frame.FRAME_BLOCKS) != 0) {
+				int n = packBlocks();
+				if (lastBlocks == null || !equals(blocks, n, lastBlocks)) {
+					lastBlocks = Arrays.copyOf(blocks, n);
+					blocksEntry.setDoubleArray(lastBlocks);
+					changed = true;
+				}
+			}
+			if ((frame.contents & Pixy2Frame.FRAME_LINE) != 0) {
+				int n = packLine();
+				if (lastLine == null || !equals(line, n, lastLine)) {
+					lastLine = Arrays.copyOf(line, n);
+					lineEntry.setRaw(lastLine);
+					changed = true;
+				}
+			}
+		}
+
+		status[0] = Math.round(fps * 10) / 10.0;
+		status[1] = Math.round(poller.getPollNanos() / 1e4) / 100.0;
+		status[2] = poller.getErrorCount();
+		status[3] = frames;
+		if (lastStatus == null || !equals(status, STATUS_VALUES, lastStatus)) {
+			lastStatus = status.clone();
+			statusEntry.setDoubleArray(lastStatus);
+			changed = true;
+		}
+		if (changed)
+			instance.flush();
+	}
+
+	/**
+	 * Packs blocks of frame into blocks array
+	 * 
+	 * @return Number of values packed
+	 */
+	private int packBlocks() {
+		int o = 0;
+		for (int i = 0; i < frame.blockCount; i++) {
+			blocks[o++] = frame.blockSignature[i];
+			blocks[o++] = frame.blockX[i];
+			blocks[o++] = frame.blockY[i];
+			blocks[o++] = frame.blockWidth[i];
+			blocks[o++] = frame.blockHeight[i];
+			blocks[o++] = frame.blockAngle[i];
+			blocks[o++] = frame.blockIndex[i];
+			blocks[o++] = frame.blockAge[i];
+		}
+		return o;
+	}
+
+	/**
+	 * Packs line features of frame into line buffer in Pixy2's wire layout
+	 * 
+	 * @return Number of bytes packed
+	 */
+	private int packLine() {
+		int o = 0;
+		// feature lengths are one byte on the wire, and all features share the buffer
+		int n = Math.min(frame.vectorCount, 0xff / Pixy2Frame.FRAME_VECTOR_SIZE);
+		if (n > 0 && o + 2 + n * Pixy2Frame.FRAME_VECTOR_SIZE <= line.length) {
+			line[o++] = Pixy2Line.LINE_VECTOR;
+			line[o++] = (byte) (n * Pixy2Frame.FRAME_VECTOR_SIZE);
+			for (int i = 0; i < n; i++) {
+				line[o++] = (byte) frame.vectorX0[i];
+				line[o++] = (byte) frame.vectorY0[i];
+				line[o++] = (byte) frame.vectorX1[i];
+				line[o++] = (byte) frame.vectorY1[i];
+				line[o++] = (byte) frame.vectorIndex[i];
+				line[o++] = (byte) frame.vectorFlags[i];
+			}
+		}
+		n = Math.min(frame.intersectionCount, 0xff / Pixy2Frame.FRAME_INTERSECTION_SIZE);
+		if (n > 0 && o + 2 + n * Pixy2Frame.FRAME_INTERSECTION_SIZE <= line.length) {
+			line[o++] = Pixy2Line.LINE_INTERSECTION;
+			line[o++] = (byte) (n * Pixy2Frame.FRAME_INTERSECTION_SIZE);
+			for (int i = 0; i < n; i++) {
+				line[o++] = (byte) frame.intersectionX[i];
+				line[o++] = (byte) frame.intersectionY[i];
+				line[o++] = (byte) frame.intersectionNumber[i];
+				line[o++] = 0;
+				for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++) {
+					int k = i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l;
+					line[o++] = (byte) frame.intersectionLineIndex[k];
+					line[o++] = 0;
+					line[o++] = (byte) (frame.intersectionLineAngle[k] & 0xff);
+					line[o++] = (byte) ((frame.intersectionLineAngle[k] >> 8) & 0xff);
+				}
+			}
+		}
+		n = Math.min(frame.barcodeCount, 0xff / Pixy2Frame.FRAME_BARCODE_SIZE);
+		if (n > 0 && o + 2 + n * Pixy2Frame.FRAME_BARCODE_SIZE <= line.length) {
+			line[o++] = Pixy2Line.LINE_BARCODE;
+			line[o++] = (byte) (n * Pixy2Frame.FRAME_BARCODE_SIZE);
+			for (int i = 0; i < n; i++) {
+				line[o++] = (byte) frame.barcodeX[i];
+				line[o++] = (byte) frame.barcodeY[i];
+				line[o++] = (byte) frame.barcodeFlags[i];
+				line[o++] = (byte) frame.barcodeCode[i];
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * Compares packed values with the last published values
+	 * 
+	 * @param values Packed values
+	 * @param length Number of packed values
+	 * @param last   Last published values
+	 * 
+	 * @return Whether they are equal
+	 */
+	private static boolean equals(double[] values, int length, double[] last) {
+		if (length != last.length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (values[i] != last[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Compares packed bytes with the last published bytes
+	 * 
+	 * @param values Packed bytes
+	 * @param length Number of packed bytes
+	 * @param last   Last published bytes
+	 * 
+	 * @return Whether they are equal
+	 */
+	private static boolean equals(byte[] values, int length, byte[] last) {
+		if (length != last.length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (values[i] != last[i])
+				return false;
+		return true;
+	}
+
+}
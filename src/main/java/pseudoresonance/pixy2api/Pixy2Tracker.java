@@ -0,0 +1,365 @@
+package pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Multi-target tracker smoothing block positions and estimating motion
+ * 
+ * Blocks are associated with tracks by their Pixy2 tracking index. Since Pixy2
+ * reuses indices after a block is lost, an index match is only trusted if the
+ * block is near where the track is predicted to be, otherwise the block goes
+ * to the nearest track with the same signature, and finally to a new track.
+ * Each track keeps alpha-beta filter state in primitive arrays and gets a
+ * stable ID that is never reused, so positions can be predicted at any time,
+ * for example to make up for the latency between the camera and an actuator.
+ * 
+ * Runs on the {@link Pixy2Poller} thread as a frame listener, or can be
+ * updated directly with {@link #update(Pixy2Frame)}.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2Tracker implements Pixy2Poller.FrameListener {
+	public final static int TRACKER_MAX_TRACKS = 32;
+	public final static double TRACKER_DEFAULT_ALPHA = 0.5;
+	public final static double TRACKER_DEFAULT_BETA = 0.1;
+	public final static double TRACKER_DEFAULT_GATE = 40;
+	public final static long TRACKER_DEFAULT_TIMEOUT = 250000000L;
+
+	// Track state
+	public final static int TRACKER_STATE_X = 0;
+	public final static int TRACKER_STATE_Y = 1;
+	public final static int TRACKER_STATE_VX = 2;
+	public final static int TRACKER_STATE_VY = 3;
+	public final static int TRACKER_STATE_SIZE = 4;
+
+	private double alpha = TRACKER_DEFAULT_ALPHA;
+	private double beta = TRACKER_DEFAULT_BETA;
+	private double gate = TRACKER_DEFAULT_GATE;
+	private long timeout = TRACKER_DEFAULT_TIMEOUT;
+
+	private int trackCount = 0;
+	private int nextId = 1;
+	private final int[] trackId = new int[TRACKER_MAX_TRACKS];
+	private final int[] trackSignature = new int[TRACKER_MAX_TRACKS];
+	private final int[] trackIndex = new int[TRACKER_MAX_TRACKS];
+	private final long[] trackSeen = new long[TRACKER_MAX_TRACKS];
+	private final double[] trackX = new double[TRACKER_MAX_TRACKS];
+	private final double[] trackY = new double[TRACKER_MAX_TRACKS];
+	private final double[] trackVX = new double[TRACKER_MAX_TRACKS];
+	private final double[] trackVY = new double[TRACKER_MAX_TRACKS];
+	private final boolean[] trackMatched = new boolean[TRACKER_MAX_TRACKS];
+
+	private final int[] blockTrack = new int[Pixy2Frame.FRAME_MAX_BLOCKS];
+
+	/**
+	 * Sets alpha-beta filter gains
+	 * 
+	 * @param alpha Position gain, between 0 and 1
+	 * @param beta  Velocity gain, between 0 and 1
+	 */
+	public synchronized void setGains(double alpha, double beta) {
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	/**
+	 * Sets how far a block may be from where a track is predicted to be and still
+	 * be associated with it
+	 * 
+	 * @param gate Distance in pixels
+	 */
+	public synchronized void setGate(double gate) {
+		this.gate = gate;
+	}
+
+	/**
+	 * Sets how long a track is kept after its block was last seen
+	 * 
+	 * @param timeout Timeout in nanoseconds
+	 */
+	public synchronized void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Updates tracks from a new frame
+	 * 
+	 * @param frame New frame
+	 */
+	@Override
+	public void frameReceived(Pixy2Frame frame) {
+		if ((frame.contents & Pixy2Frame.FRAME_BLOCKS) != 0)
+			update(frame);
+	}
+
+	/**
+	 * Associates blocks of a frame with tracks and updates track filters
+	 * 
+	 * @param frame Frame
+	 */
+	public synchronized void update(Pixy2Frame frame) {
+		long now = frame.timestamp;
+		double gate2 = gate * gate;
+		for (int t = 0; t < trackCount; t++)
+			trackMatched[t] = false;
+
+		// match by tracking index where the block is where the track should be
+		for (int i = 0; i < frame.blockCount; i++) {
+			blockTrack[i] = -1;
+			for (int t = 0; t < trackCount; t++) {
+				if (!trackMatched[t] && trackIndex[t] == frame.blockIndex[i]
+						&& trackSignature[t] == frame.blockSignature[i]
+						&& distance2(t, frame.blockX[i], frame.blockY[i], now) <= gate2) {
+					trackMatched[t] = true;
+					blockTrack[i] = t;
+					break;
+				}
+			}
+		}
+
+		// fall back to nearest unmatched track with the same signature
+		for (int i = 0; i < frame.blockCount; i++) {
+			if (blockTrack[i] >= 0)
+				continue;
+			int best = -1;
+			double bestDistance = gate2;
+			for (int t = 0; t < trackCount; t++) {
+				if (trackMatched[t] || trackSignature[t] != frame.blockSignature[i])
+					continue;
+				double d = distance2(t, frame.blockX[i], frame.blockY[i], now);
+				if (d <= bestDistance) {
+					best = t;
+					bestDistance = d;
+				}
+			}
+			if (best >= 0) {
+				trackMatched[best] = true;
+				blockTrack[i] = best;
+			}
+		}
+
+		// drop tracks that timed out before starting new ones
+		for (int t = trackCount - 1; t >= 0; t--) {
+			if (!trackMatched[t] && now - trackSeen[t] > timeout) {
+				int last = trackCount - 1;
+				remove(t);
+				for (int i = 0; i < frame.blockCount; i++)
+					if (blockTrack[i] == last)
+						blockTrack[i] = t;
+			}
+		}
+
+		for (int i = 0; i < frame.blockCount; i++) {
+			int t = blockTrack[i];
+			if (t < 0) {
+				if (trackCount >= TRACKER_MAX_TRACKS)
+					continue;
+				t = trackCount++;
+				trackId[t] = nextId++;
+				trackSignature[t] = frame.blockSignature[i];
+				trackX[t] = frame.blockX[i];
+				trackY[t] = frame.blockY[i];
+				trackVX[t] = 0;
+				trackVY[t] = 0;
+				trackMatched[t] = true;
+			} else {
+				double dt = (now - trackSeen[t]) / 1e9;
+				double px = trackX[t] + trackVX[t] * dt;
+				double py = trackY[t] + trackVY[t] * dt;
+				double rx = frame.blockX[i] - px;
+				double ry = frame.blockY[i] - py;
+				trackX[t] = px + alpha * rx;
+				trackY[t] = py + alpha * ry;
+				if (dt > 0) {
+					trackVX[t] += beta * rx / dt;
+					trackVY[t] += beta * ry / dt;
+				}
+			}
+			trackIndex[t] = frame.blockIndex[i];
+			trackSeen[t] = now;
+		}
+	}
+
+	/**
+	 * Gets squared distance between a point and where a track is predicted to be
+	 * 
+	 * @param t    Track slot
+	 * @param x    X position
+	 * @param y    Y position
+	 * @param time Time in {@link System#nanoTime()} units
+	 * 
+	 * @return Squared distance
+	 */
+	private double distance2(int t, int x, int y, long time) {
+		double dt = (time - trackSeen[t]) / 1e9;
+		double dx = x - (trackX[t] + trackVX[t] * dt);
+		double dy = y - (trackY[t] + trackVY[t] * dt);
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Removes track by moving the last track into its slot
+	 * 
+	 * @param t Track slot
+	 */
+	private void remove(int t) {
+		int last = --trackCount;
+		trackId[t] = trackId[last];
+		trackSignature[t] = trackSignature[last];
+		trackIndex[t] = trackIndex[last];
+		trackSeen[t] = trackSeen[last];
+		trackX[t] = trackX[last];
+		trackY[t] = trackY[last];
+		trackVX[t] = trackVX[last];
+		trackVY[t] = trackVY[last];
+		trackMatched[t] = trackMatched[last];
+	}
+
+	/**
+	 * Gets slot of a track
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return Track slot, or -1 if there is no such track
+	 */
+	private int find(int id) {
+		for (int t = 0; t < trackCount; t++)
+			if (trackId[t] == id)
+				return t;
+		return -1;
+	}
+
+	/**
+	 * Copies IDs of all current tracks
+	 * 
+	 * @param dest Array to copy IDs into, at least {@link #TRACKER_MAX_TRACKS}
+	 *             long to get all tracks
+	 * 
+	 * @return Number of IDs copied
+	 */
+	public synchronized int getTrackIds(int[] dest) {
+		int n = Math.min(trackCount, dest.length);
+		System.arraycopy(trackId, 0, dest, 0, n);
+		return n;
+	}
+
+	/**
+	 * @return Number of current tracks
+	 */
+	public synchronized int getTrackCount() {
+		return trackCount;
+	}
+
+	/**
+	 * Gets filtered state of a track extrapolated to a given time
+	 * 
+	 * @param id   Track ID
+	 * @param time Time in {@link System#nanoTime()} units, such as the current
+	 *             time plus actuator latency
+	 * @param dest Array of at least {@link #TRACKER_STATE_SIZE} to copy the
+	 *             position in pixels and velocity in pixels per second into,
+	 *             indexed by the TRACKER_STATE constants
+	 * 
+	 * @return Whether the track exists
+	 */
+	public synchronized boolean getState(int id, long time, double[] dest) {
+		int t = find(id);
+		if (t < 0)
+			return false;
+		double dt = (time - trackSeen[t]) / 1e9;
+		dest[TRACKER_STATE_X] = trackX[t] + trackVX[t] * dt;
+		dest[TRACKER_STATE_Y] = trackY[t] + trackVY[t] * dt;
+		dest[TRACKER_STATE_VX] = trackVX[t];
+		dest[TRACKER_STATE_VY] = trackVY[t];
+		return true;
+	}
+
+	/**
+	 * Gets filtered X position of a track when its block was last seen
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return X position in pixels, or NaN if there is no such track
+	 */
+	public synchronized double getX(int id) {
+		int t = find(id);
+		return t < 0 ? Double.NaN : trackX[t];
+	}
+
+	/**
+	 * Gets filtered Y position of a track when its block was last seen
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return Y position in pixels, or NaN if there is no such track
+	 */
+	public synchronized double getY(int id) {
+		int t = find(id);
+		return t < 0 ? Double.NaN : trackY[t];
+	}
+
+	/**
+	 * Gets X velocity of a track
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return X velocity in pixels per second, or NaN if there is no such track
+	 */
+	public synchronized double getVelocityX(int id) {
+		int t = find(id);
+		return t < 0 ? Double.NaN : trackVX[t];
+	}
+
+	/**
+	 * Gets Y velocity of a track
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return Y velocity in pixels per second, or NaN if there is no such track
+	 */
+	public synchronized double getVelocityY(int id) {
+		int t = find(id);
+		return t < 0 ? Double.NaN : trackVY[t];
+	}
+
+	/**
+	 * Gets signature of a track
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return Block signature, or 0 if there is no such track
+	 */
+	public synchronized int getSignature(int id) {
+		int t = find(id);
+		return t < 0 ? 0 : trackSignature[t];
+	}
+
+	/**
+	 * Gets Pixy2 tracking index last associated with a track
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return Block tracking index, or -1 if there is no such track
+	 */
+	public synchronized int getIndex(int id) {
+		int t = find(id);
+		return t < 0 ? -1 : trackIndex[t];
+	}
+
+	/**
+	 * Gets when a track's block was last seen
+	 * 
+	 * @param id Track ID
+	 * 
+	 * @return Time in {@link System#nanoTime()} units, or 0 if there is no such
+	 *         track
+	 */
+	public synchronized long getLastSeen(int id) {
+		int t = find(id);
+		return t < 0 ? 0 : trackSeen[t];
+	}
+
+}
@@ -37,8 +37,18 @@ import java.util.concurrent.TimeUnit;
 public class Pixy2Video {
 	public final static byte VIDEO_REQUEST_GET_RGB = 0x70;
 
+	// Requests sent back to back when sampling many points
+	public final static int VIDEO_PIPELINE_DEPTH = Pixy2Batch.BATCH_MAX_REQUESTS;
+	// Packed RGB value of a point that could not be sampled
+	public final static int VIDEO_RGB_ERROR = -1;
+
+	private final static int RGB_REQUEST_SIZE = Pixy2.PIXY_SEND_HEADER_SIZE + 5;
+
 	private final Pixy2 pixy;
 
+	private final byte[] packets = new byte[VIDEO_PIPELINE_DEPTH * RGB_REQUEST_SIZE];
+	private final int[] pending = new int[VIDEO_PIPELINE_DEPTH];
+
 	/**
 	 * Constructs Pixy2 video getter
 	 * 
@@ -87,6 +97,116 @@ public class Pixy2Video {
 		}
 	}
 
+	/**
+	 * Gets average RGB values at 5x5 areas around a list of coordinates,
+	 * pipelining up to {@link #VIDEO_PIPELINE_DEPTH} requests per link write
+	 * 
+	 * @param points   Coordinates as x, y pairs
+	 * @param count    Number of points to sample
+	 * @param rgb      Array to return RGB values in, packed as 0xRRGGBB, or
+	 *                 {@link #VIDEO_RGB_ERROR} for points that failed
+	 * @param saturate Whether or not to scale all RGB values to maximize the
+	 *                 greatest value at 255
+	 * 
+	 * @return Number of points sampled or Pixy2 error code
+	 */
+	public int getRGB(int[] points, int count, int[] rgb, boolean saturate) {
+		return sampleRGB(points, 0, 0, 0, 0, 1, count, rgb, saturate);
+	}
+
+	/**
+	 * Gets average RGB values at 5x5 areas around a grid of coordinates,
+	 * pipelining up to {@link #VIDEO_PIPELINE_DEPTH} requests per link write
+	 * 
+	 * @param x        X value of first column
+	 * @param y        Y value of first row
+	 * @param stepX    Distance between columns
+	 * @param stepY    Distance between rows
+	 * @param cols     Number of columns
+	 * @param rows     Number of rows
+	 * @param rgb      Array to return RGB values in row by row, packed as
+	 *                 0xRRGGBB, or {@link #VIDEO_RGB_ERROR} for points that
+	 *                 failed
+	 * @param saturate Whether or not to scale all RGB values to maximize the
+	 *                 greatest value at 255
+	 * 
+	 * @return Number of points sampled or Pixy2 error code
+	 */
+	public int getRGBGrid(int x, int y, int stepX, int stepY, int cols, int rows, int[] rgb, boolean saturate) {
+		return sampleRGB(null, x, y, stepX, stepY, cols, cols * rows, rgb, saturate);
+	}
+
+	/**
+	 * Samples points from a list or grid in pipelined chunks
+	 * 
+	 * @param points   Coordinates as x, y pairs, or null to sample a grid
+	 * @param x        X value of first grid column
+	 * @param y        Y value of first grid row
+	 * @param stepX    Distance between grid columns
+	 * @param stepY    Distance between grid rows
+	 * @param cols     Number of grid columns
+	 * @param count    Number of points to sample
+	 * @param rgb      Array to return packed RGB values in
+	 * @param saturate Whether or not to saturate RGB values
+	 * 
+	 * @return Number of points sampled or Pixy2 error code
+	 */
+	private int sampleRGB(int[] points, int x, int y, int stepX, int stepY, int cols, int count, int[] rgb,
+			boolean saturate) {
+		int ok = 0;
+		for (int start = 0; start < count; start += VIDEO_PIPELINE_DEPTH) {
+			int n = Math.min(VIDEO_PIPELINE_DEPTH, count - start);
+			for (int i = 0; i < n; i++)
+				pending[i] = start + i;
+			while (n > 0) {
+				int length = 0;
+				for (int i = 0; i < n; i++) {
+					int p = pending[i];
+					int px = points != null ? points[2 * p] : x + (p % cols) * stepX;
+					int py = points != null ? points[2 * p + 1] : y + (p / cols) * stepY;
+					packets[length] = (byte) (Pixy2.PIXY_NO_CHECKSUM_SYNC & 0xff);
+					packets[length + 1] = (byte) ((Pixy2.PIXY_NO_CHECKSUM_SYNC >> 8) & 0xff);
+					packets[length + 2] = VIDEO_REQUEST_GET_RGB;
+					packets[length + 3] = 5;
+					packets[length + 4] = (byte) (px & 0xff);
+					packets[length + 5] = (byte) ((px >> 8) & 0xff);
+					packets[length + 6] = (byte) (py & 0xff);
+					packets[length + 7] = (byte) ((py >> 8) & 0xff);
+					packets[length + 8] = (byte) (saturate == true ? 1 : 0);
+					length += RGB_REQUEST_SIZE;
+				}
+				if (pixy.sendPackets(packets, length) < 0)
+					return Pixy2.PIXY_RESULT_ERROR;
+
+				// responses come back in order, retry the ones that hit a program change
+				int retry = 0;
+				for (int i = 0; i < n; i++) {
+					int p = pending[i];
+					if (pixy.receivePacket() != 0)
+						return Pixy2.PIXY_RESULT_ERROR; // some kind of bitstream error
+					if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
+						rgb[p] = ((pixy.buffer[0] & 0xff) << 16) | ((pixy.buffer[1] & 0xff) << 8)
+								| (pixy.buffer[2] & 0xff);
+						ok++;
+					} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR
+							&& pixy.buffer[0] == Pixy2.PIXY_RESULT_PROG_CHANGING)
+						pending[retry++] = p;
+					else
+						rgb[p] = VIDEO_RGB_ERROR;
+				}
+				n = retry;
+				if (n > 0) {
+					// deal with program changing
+					try {
+						TimeUnit.MICROSECONDS.sleep(500);
+					} catch (InterruptedException e) {
+					} // don't be a drag
+				}
+			}
+		}
+		return ok;
+	}
+
 	public class RGB {
 
 		int r, g, b;
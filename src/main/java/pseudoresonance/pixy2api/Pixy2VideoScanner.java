@@ -0,0 +1,247 @@
+package pseudoresonance.pixy2api;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ * 
+ * Progressive low resolution picture of what Pixy2 sees
+ * 
+ * Scans the frame with {@link Pixy2Video#getRGB(int[], int, int[], boolean)}
+ * into a small RGB raster, a few points at a time on the {@link Pixy2Poller}
+ * thread. Batches are sent at a limited rate, not on every poller cycle, since
+ * idle cycles come much faster than frames and would keep the link busy, so
+ * tracking is never held up for long. Points are scanned in interlaced passes,
+ * every 8th point first and then the points between, and during the first
+ * scan each point fills the area around it until a finer pass replaces it, so
+ * a rough picture is ready after a few cycles and sharpens from there. After
+ * the first scan, scanning starts over to keep the picture current.
+ * 
+ * Readers copy the raster with optimistic reads, so reading never blocks the
+ * poller.
+ * 
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ * 
+ * @author PseudoResonance
+ */
+
+public class Pixy2VideoScanner implements Pixy2Poller.Task {
+	public final static int SCANNER_DEFAULT_BUDGET = Pixy2Video.VIDEO_PIPELINE_DEPTH;
+	public final static double SCANNER_DEFAULT_RATE = 30;
+
+	// Pixy2 video resolution, used until resolution is known
+	public final static int SCANNER_DEFAULT_FRAME_WIDTH = 316;
+	public final static int SCANNER_DEFAULT_FRAME_HEIGHT = 208;
+
+	private final static int COARSEST_STEP = 8;
+
+	private final Pixy2Poller poller;
+	private final int cols, rows;
+
+	private final int[] raster;
+	private final int[] order;
+	private final byte[] orderStep;
+	private final StampedLock lock = new StampedLock();
+
+	private volatile int budget = SCANNER_DEFAULT_BUDGET;
+	private volatile long periodNanos = (long) (1e9 / SCANNER_DEFAULT_RATE);
+	private volatile boolean saturate = false;
+
+	private final int[] points = new int[2 * Pixy2Video.VIDEO_PIPELINE_DEPTH];
+	private final int[] samples = new int[Pixy2Video.VIDEO_PIPELINE_DEPTH];
+	private int position = 0;
+	private long lastRun = 0;
+	private volatile int scans = 0;
+
+	private boolean enabled = false;
+
+	/**
+	 * Constructs disabled scanner
+	 * 
+	 * @param poller Poller for the Pixy2 to scan
+	 * @param cols   Raster width
+	 * @param rows   Raster height
+	 */
+	public Pixy2VideoScanner(Pixy2Poller poller, int cols, int rows) {
+		this.poller = poller;
+		this.cols = cols;
+		this.rows = rows;
+		raster = new int[cols * rows];
+		order = new int[cols * rows];
+		orderStep = new byte[cols * rows];
+
+		// interlaced order, coarsest grid first, each point only once
+		int n = 0;
+		for (int step = COARSEST_STEP; step >= 1; step /= 2) {
+			for (int y = 0; y < rows; y += step) {
+				for (int x = 0; x < cols; x += step) {
+					if (step < COARSEST_STEP && x % (step * 2) == 0 && y % (step * 2) == 0)
+						continue; // scanned in a coarser pass
+					orderStep[n] = (byte) step;
+					order[n++] = y * cols + x;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts or stops scanning
+	 * 
+	 * @param enabled Whether to scan
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		if (this.enabled == enabled)
+			return;
+		this.enabled = enabled;
+		if (enabled)
+			poller.addTask(this);
+		else
+			poller.removeTask(this);
+	}
+
+	/**
+	 * Sets how many points are sampled each time the scanner runs
+	 * 
+	 * @param budget Points per run
+	 */
+	public void setBudget(int budget) {
+		this.budget = Math.max(budget, 1);
+	}
+
+	/**
+	 * Sets how often the scanner runs
+	 * 
+	 * @param rate Runs per second
+	 */
+	public void setRate(double rate) {
+		if (rate <= 0)
+			throw new IllegalArgumentException("Rate must be positive");
+		this.periodNanos = (long) (1e9 / rate);
+	}
+
+	/**
+	 * Sets whether samples are saturated
+	 * 
+	 * @param saturate Whether or not to scale all RGB values to maximize the
+	 *                 greatest value at 255
+	 */
+	public void setSaturate(boolean saturate) {
+		this.saturate = saturate;
+	}
+
+	/**
+	 * Samples next points within the budget at the configured rate, called on
+	 * the poller thread
+	 * 
+	 * @param pixy Pixy2 instance
+	 */
+	@Override
+	public void run(Pixy2 pixy) {
+		long now = System.nanoTime();
+		if (now - lastRun < periodNanos)
+			return;
+		lastRun = now;
+		int width = pixy.frameWidth > 0 ? pixy.frameWidth : SCANNER_DEFAULT_FRAME_WIDTH;
+		int height = pixy.frameHeight > 0 ? pixy.frameHeight : SCANNER_DEFAULT_FRAME_HEIGHT;
+		int remaining = budget;
+		while (remaining > 0) {
+			int n = Math.min(Math.min(remaining, Pixy2Video.VIDEO_PIPELINE_DEPTH), order.length - position);
+			for (int i = 0; i < n; i++) {
+				int p = order[position + i];
+				points[2 * i] = ((p % cols) * width + width / 2) / cols;
+				points[2 * i + 1] = ((p / cols) * height + height / 2) / rows;
+			}
+			if (pixy.getVideo().getRGB(points, n, samples, saturate) < 0)
+				return;
+
+			long stamp = lock.writeLock();
+			try {
+				for (int i = 0; i < n; i++) {
+					if (samples[i] == Pixy2Video.VIDEO_RGB_ERROR)
+						continue;
+					int p = order[position + i];
+					int step = scans == 0 ? orderStep[position + i] : 1;
+					fill(p % cols, p / cols, step, samples[i]);
+				}
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+			position += n;
+			remaining -= n;
+			if (position >= order.length) {
+				position = 0;
+				scans++;
+			}
+		}
+	}
+
+	/**
+	 * Fills area of raster covered by a sample until finer samples arrive
+	 * 
+	 * @param x    Raster column
+	 * @param y    Raster row
+	 * @param step Size of area
+	 * @param rgb  Packed RGB value
+	 */
+	private void fill(int x, int y, int step, int rgb) {
+		int xEnd = Math.min(x + step, cols), yEnd = Math.min(y + step, rows);
+		for (int j = y; j < yEnd; j++)
+			for (int i = x; i < xEnd; i++)
+				raster[j * cols + i] = rgb;
+	}
+
+	/**
+	 * Copies raster without blocking the poller
+	 * 
+	 * @param dest Array of at least width times height to copy packed 0xRRGGBB
+	 *             values into, row by row
+	 */
+	public void getRaster(int[] dest) {
+		while (true) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				System.arraycopy(raster, 0, dest, 0, raster.length);
+				if (lock.validate(stamp))
+					return;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Creates image of the raster for saving or display
+	 * 
+	 * @return New image
+	 */
+	public BufferedImage getImage() {
+		int[] copy = new int[raster.length];
+		getRaster(copy);
+		BufferedImage image = new BufferedImage(cols, rows, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, cols, rows, copy, 0, cols);
+		return image;
+	}
+
+	/**
+	 * @return Raster width
+	 */
+	public int getWidth() {
+		return cols;
+	}
+
+	/**
+	 * @return Raster height
+	 */
+	public int getHeight() {
+		return rows;
+	}
+
+	/**
+	 * @return Number of complete scans, the raster is complete once this is
+	 *         above 0
+	 */
+	public int getScanCount() {
+		return scans;
+	}
+
+}
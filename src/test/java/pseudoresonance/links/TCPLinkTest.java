@@ -0,0 +1,195 @@
+package pseudoresonance.links;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pseudoresonance.pixy2api.Pixy2;
+import pseudoresonance.pixy2api.Pixy2.Checksum;
+
+public class TCPLinkTest {
+	private final static int PORT = 5896;
+
+	private ScriptedLink local;
+	private TCPLinkServer server;
+	private TCPLink link;
+
+	@Before
+	public void setUp() {
+		local = new ScriptedLink();
+		server = new TCPLinkServer(local, PORT);
+		assertEquals(Pixy2.PIXY_RESULT_OK, server.start());
+		link = new TCPLink("127.0.0.1", PORT);
+	}
+
+	@After
+	public void tearDown() {
+		link.close();
+		server.stop();
+	}
+
+	@Test
+	public void forwardsSendsAndReceives() {
+		local.respond(1, 2, 3, 4, 5);
+		assertEquals(0, link.open(Pixy2.PIXY_DEFAULT_ARGVAL));
+		assertEquals(3, link.send(new byte[] { 9, 8, 7 }, 3));
+
+		byte[] buffer = new byte[5];
+		assertEquals(5, link.receive(buffer, 5));
+		assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, buffer);
+		// sends aren't acknowledged, but are performed before the receive that follows
+		assertEquals(1, local.sends.size());
+		assertArrayEquals(new byte[] { 9, 8, 7 }, local.sends.get(0));
+
+		// errors of the server's link are passed through
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, link.receive(buffer, 1));
+	}
+
+	@Test
+	public void connectTimesOut() throws IOException {
+		// a listener that never accepts stops answering connects once its backlog is full
+		ServerSocketChannel full = ServerSocketChannel.open();
+		List<SocketChannel> pending = new ArrayList<SocketChannel>();
+		try {
+			full.bind(new InetSocketAddress("127.0.0.1", 0), 1);
+			for (int i = 0; i < 8; i++) {
+				SocketChannel c = SocketChannel.open();
+				c.configureBlocking(false);
+				c.connect(full.getLocalAddress());
+				pending.add(c);
+			}
+			TCPLink unreachable = new TCPLink("127.0.0.1", full.socket().getLocalPort());
+			unreachable.setTimeout(100);
+			long start = System.nanoTime();
+			assertEquals(Pixy2.PIXY_RESULT_ERROR, unreachable.open(Pixy2.PIXY_DEFAULT_ARGVAL));
+			long millis = (System.nanoTime() - start) / 1000000L;
+			assertTrue(millis >= 90 && millis < 1000);
+		} finally {
+			for (SocketChannel c : pending)
+				c.close();
+			full.close();
+		}
+	}
+
+	@Test
+	public void dropsClientSendingOversizedHeader() throws IOException {
+		Socket raw = new Socket("127.0.0.1", PORT);
+		try {
+			raw.setSoTimeout(2000);
+			OutputStream out = raw.getOutputStream();
+			out.write(new byte[] { TCPLink.PIXY_TCP_OP_SEND, (byte) 0xff, (byte) 0xff });
+			out.flush();
+			assertEquals(-1, raw.getInputStream().read());
+		} finally {
+			raw.close();
+		}
+
+		// server keeps serving new clients
+		local.respond(42);
+		byte[] buffer = new byte[1];
+		assertEquals(1, link.receive(buffer, 1));
+		assertEquals(42, buffer[0]);
+	}
+
+	@Test
+	public void dropsClientNotReadingReplies() throws IOException {
+		local.endless = true;
+		server.setTimeout(50);
+		int requests = 1000;
+		byte[] request = new byte[TCPLink.PIXY_TCP_HEADER_SIZE * requests];
+		for (int i = 0; i < requests; i++) {
+			request[i * TCPLink.PIXY_TCP_HEADER_SIZE] = TCPLink.PIXY_TCP_OP_RECEIVE;
+			request[i * TCPLink.PIXY_TCP_HEADER_SIZE + 1] = (byte) (TCPLink.PIXY_TCP_MAX_LENGTH & 0xff);
+			request[i * TCPLink.PIXY_TCP_HEADER_SIZE + 2] = (byte) (TCPLink.PIXY_TCP_MAX_LENGTH >> 8);
+		}
+		Socket raw = new Socket("127.0.0.1", PORT);
+		long total = 0;
+		try {
+			raw.setSoTimeout(5000);
+			raw.getOutputStream().write(request);
+			raw.getOutputStream().flush();
+			// wait for the server to fill the socket buffers and give up
+			try {
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+			}
+			InputStream in = raw.getInputStream();
+			byte[] buffer = new byte[65536];
+			int n;
+			while ((n = in.read(buffer)) >= 0)
+				total += n;
+		} finally {
+			raw.close();
+		}
+		assertTrue(total < (long) requests * (TCPLink.PIXY_TCP_RESULT_SIZE + TCPLink.PIXY_TCP_MAX_LENGTH));
+
+		byte[] buffer = new byte[1];
+		assertEquals(1, link.receive(buffer, 1));
+	}
+
+	/**
+	 * Records sends and replays queued responses, or answers every receive if
+	 * endless
+	 */
+	private static class ScriptedLink implements Link {
+		final List<byte[]> sends = Collections.synchronizedList(new ArrayList<byte[]>());
+		volatile boolean endless = false;
+		private byte[] responses = new byte[0];
+		private int position = 0;
+
+		synchronized void respond(int... data) {
+			int n = responses.length;
+			responses = Arrays.copyOf(responses, n + data.length);
+			for (int i = 0; i < data.length; i++)
+				responses[n + i] = (byte) data[i];
+		}
+
+		public int open(int arg) {
+			return 0;
+		}
+
+		public void close() {
+		}
+
+		public synchronized int receive(byte[] buffer, int length, Checksum cs) {
+			if (cs != null)
+				cs.reset();
+			if (endless)
+				return length;
+			if (position + length > responses.length)
+				return Pixy2.PIXY_RESULT_ERROR;
+			System.arraycopy(responses, position, buffer, 0, length);
+			position += length;
+			if (cs != null)
+				for (int i = 0; i < length; i++)
+					cs.updateChecksum(buffer[i] & 0xff);
+			return length;
+		}
+
+		public int receive(byte[] buffer, int length) {
+			return receive(buffer, length, null);
+		}
+
+		public int send(byte[] buffer, int length) {
+			sends.add(Arrays.copyOf(buffer, length));
+			return length;
+		}
+	}
+
+}
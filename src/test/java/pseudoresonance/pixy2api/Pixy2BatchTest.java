@@ -0,0 +1,178 @@
+package pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pseudoresonance.links.Link;
+import pseudoresonance.pixy2api.Pixy2.Checksum;
+
+public class Pixy2BatchTest {
+
+	private ScriptedLink link;
+	private Pixy2 pixy;
+
+	@Before
+	public void setUp() {
+		link = new ScriptedLink();
+		pixy = Pixy2.createInstance(link);
+	}
+
+	@Test
+	public void packsRequestsBackToBackInOneWrite() {
+		Pixy2Batch batch = pixy.createBatch().setServos(100, 2000).setLED(1, 2, 3).getBlocks(0xff, 10);
+		assertEquals(3, batch.size());
+		batch.execute();
+
+		assertEquals(1, link.sends.size());
+		byte[] expected = concat(
+				request(Pixy2.PIXY_TYPE_REQUEST_SERVO, 100, 0, Pixy2.PIXY_RCS_MAX_POS & 0xff,
+						Pixy2.PIXY_RCS_MAX_POS >> 8),
+				request(Pixy2.PIXY_TYPE_REQUEST_LED, 1, 2, 3),
+				request(Pixy2CCC.CCC_REQUEST_BLOCKS, 0xff, 10));
+		assertArrayEquals(expected, link.sends.get(0));
+	}
+
+	@Test
+	public void clampsValues() {
+		pixy.createBatch().setServos(-5, 5000).setLED(-1, 300, 128).setCameraBrightness(999).execute();
+		byte[] expected = concat(
+				request(Pixy2.PIXY_TYPE_REQUEST_SERVO, 0, 0, Pixy2.PIXY_RCS_MAX_POS & 0xff,
+						Pixy2.PIXY_RCS_MAX_POS >> 8),
+				request(Pixy2.PIXY_TYPE_REQUEST_LED, 0, 255, 128),
+				request(Pixy2.PIXY_TYPE_REQUEST_BRIGHTNESS, 255));
+		assertArrayEquals(expected, link.sends.get(0));
+	}
+
+	@Test
+	public void addsPreEncodedRequests() {
+		Pixy2Request fps = Pixy2.PIXY_REQUEST_FPS;
+		pixy.createBatch().add(fps).add(fps).execute();
+		byte[] one = new byte[Pixy2.PIXY_SEND_HEADER_SIZE + fps.getPayloadLength()];
+		fps.copyTo(one, 0);
+		assertArrayEquals(concat(one, one), link.sends.get(0));
+	}
+
+	@Test
+	public void demultiplexesResponsesInOrder() {
+		link.respond(Pixy2.PIXY_TYPE_RESPONSE_RESULT, 0, 0, 0, 0);
+		link.respond(Pixy2.PIXY_TYPE_RESPONSE_RESULT, 60, 0, 0, 0);
+		link.respond(Pixy2CCC.CCC_RESPONSE_BLOCKS, 1, 0, 10, 0, 20, 0, 4, 0, 6, 0, 0, 0, 7, 1, 2, 0, 30, 0, 40, 0,
+				8, 0, 8, 0, 0, 0, 9, 2);
+		Pixy2Batch batch = pixy.createBatch().setServos(500, 500).getFPS().getBlocks(0xff, 2);
+
+		assertEquals(3, batch.execute());
+		assertEquals(0, batch.getResult(0));
+		assertEquals(60, batch.getResult(1));
+		assertEquals(2, batch.getResult(2));
+		assertEquals(2, pixy.getCCC().getBlocks().size());
+		assertEquals(30, pixy.getCCC().getBlocks().get(1).getX());
+	}
+
+	@Test
+	public void failsRemainingRequestsWhenOutOfSync() {
+		link.respond(Pixy2.PIXY_TYPE_RESPONSE_RESULT, 0, 0, 0, 0);
+		Pixy2Batch batch = pixy.createBatch().setLED(1, 2, 3).setServos(0, 0).getFPS();
+
+		assertEquals(1, batch.execute());
+		assertEquals(0, batch.getResult(0));
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, batch.getResult(1));
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, batch.getResult(2));
+	}
+
+	@Test
+	public void rejectsRequestsBeyondCapacity() {
+		Pixy2Batch batch = pixy.createBatch();
+		for (int i = 0; i < Pixy2Batch.BATCH_MAX_REQUESTS; i++)
+			batch.setLED(i, i, i);
+		try {
+			batch.getFPS();
+			fail("Expected full batch");
+		} catch (IllegalStateException e) {
+		}
+		assertEquals(Pixy2Batch.BATCH_MAX_REQUESTS, batch.size());
+	}
+
+	@Test
+	public void clearEmptiesBatch() {
+		Pixy2Batch batch = pixy.createBatch().setLED(1, 2, 3);
+		batch.clear();
+		assertEquals(0, batch.size());
+		assertEquals(0, batch.execute());
+		assertEquals(0, link.sends.size());
+		batch.getBlocks(1, 1).execute();
+		assertArrayEquals(request(Pixy2CCC.CCC_REQUEST_BLOCKS, 1, 1), link.sends.get(0));
+	}
+
+	private static byte[] request(byte type, int... payload) {
+		byte[] packet = new byte[Pixy2.PIXY_SEND_HEADER_SIZE + payload.length];
+		packet[0] = (byte) (Pixy2.PIXY_NO_CHECKSUM_SYNC & 0xff);
+		packet[1] = (byte) ((Pixy2.PIXY_NO_CHECKSUM_SYNC >> 8) & 0xff);
+		packet[2] = type;
+		packet[3] = (byte) payload.length;
+		for (int i = 0; i < payload.length; i++)
+			packet[Pixy2.PIXY_SEND_HEADER_SIZE + i] = (byte) payload[i];
+		return packet;
+	}
+
+	private static byte[] concat(byte[]... packets) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] packet : packets)
+			out.write(packet, 0, packet.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Records sends and replays queued responses
+	 */
+	private static class ScriptedLink implements Link {
+		final List<byte[]> sends = new ArrayList<byte[]>();
+		private byte[] responses = new byte[0];
+		private int position = 0;
+
+		void respond(byte type, int... payload) {
+			byte[] packet = request(type, payload);
+			int n = responses.length;
+			responses = Arrays.copyOf(responses, n + packet.length);
+			System.arraycopy(packet, 0, responses, n, packet.length);
+		}
+
+		public int open(int arg) {
+			return 0;
+		}
+
+		public void close() {
+		}
+
+		public int receive(byte[] buffer, int length, Checksum cs) {
+			if (cs != null)
+				cs.reset();
+			if (position + length > responses.length)
+				return Pixy2.PIXY_RESULT_ERROR;
+			System.arraycopy(responses, position, buffer, 0, length);
+			position += length;
+			if (cs != null)
+				for (int i = 0; i < length; i++)
+					cs.updateChecksum(buffer[i] & 0xff);
+			return length;
+		}
+
+		public int receive(byte[] buffer, int length) {
+			return receive(buffer, length, null);
+		}
+
+		public int send(byte[] buffer, int length) {
+			sends.add(Arrays.copyOf(buffer, length));
+			return length;
+		}
+	}
+
+}
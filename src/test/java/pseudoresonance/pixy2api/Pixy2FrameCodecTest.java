@@ -0,0 +1,309 @@
+package pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class Pixy2FrameCodecTest {
+
+	private Pixy2FrameCodec encoder;
+	private Pixy2FrameCodec decoder;
+	private final byte[] buffer = new byte[Pixy2FrameCodec.CODEC_MAX_SIZE];
+	private final Pixy2Frame decoded = new Pixy2Frame();
+
+	@Before
+	public void setUp() {
+		encoder = new Pixy2FrameCodec();
+		decoder = new Pixy2FrameCodec();
+	}
+
+	@Test
+	public void keyframeRoundTrip() {
+		Pixy2Frame frame = blocksFrame(1, 1000);
+		addBlock(frame, 1, 10, 20, 30, 40, -90, 5, 3);
+		addBlock(frame, 2, 150, 100, 8, 6, 0, 7, 255);
+
+		int length = encoder.encode(frame, buffer, 0);
+		assertTrue(length > 0);
+		assertEquals(Pixy2FrameCodec.CODEC_KEYFRAME, buffer[0] & Pixy2FrameCodec.CODEC_KEYFRAME);
+		assertEquals(length, decoder.decode(buffer, 0, length, decoded));
+		assertFramesEqual(frame, decoded);
+		assertEquals(1, decoder.getReferenceSequence());
+	}
+
+	@Test
+	public void deltaRoundTripIsSmaller() {
+		Pixy2Frame first = blocksFrame(1, 1000);
+		addBlock(first, 1, 10, 20, 30, 40, -90, 5, 3);
+		addBlock(first, 2, 150, 100, 8, 6, 0, 7, 255);
+		int keyLength = roundTrip(first);
+
+		Pixy2Frame second = blocksFrame(2, 17667);
+		addBlock(second, 1, 12, 20, 30, 40, -90, 5, 4);
+		addBlock(second, 2, 150, 100, 8, 6, 0, 7, 255);
+		int deltaLength = encoder.encode(second, buffer, 0);
+		assertEquals(0, buffer[0] & Pixy2FrameCodec.CODEC_KEYFRAME);
+		assertEquals(deltaLength, decoder.decode(buffer, 0, deltaLength, decoded));
+		assertFramesEqual(second, decoded);
+		assertTrue("delta " + deltaLength + " not smaller than keyframe " + keyLength, deltaLength < keyLength);
+	}
+
+	@Test
+	public void blocksAddedAndRemoved() {
+		Pixy2Frame first = blocksFrame(1, 0);
+		addBlock(first, 1, 10, 10, 5, 5, 0, 1, 1);
+		addBlock(first, 1, 50, 50, 5, 5, 0, 2, 1);
+		addBlock(first, 3, 90, 90, 5, 5, 0, 3, 1);
+		roundTrip(first);
+
+		// block 2 gone, block 9 new, remaining ones reordered
+		Pixy2Frame second = blocksFrame(2, 0);
+		addBlock(second, 3, 91, 90, 5, 5, 0, 3, 2);
+		addBlock(second, 4, 200, 150, 20, 10, 45, 9, 0);
+		addBlock(second, 1, 10, 11, 5, 5, 0, 1, 2);
+		roundTrip(second);
+
+		Pixy2Frame third = blocksFrame(3, 0);
+		roundTrip(third);
+		assertEquals(0, decoded.getBlockCount());
+	}
+
+	@Test
+	public void lineFeaturesRoundTrip() {
+		Pixy2Frame first = lineFrame(1);
+		addVector(first, 10, 50, 40, 0, 4, 0);
+		addIntersection(first, 40, 0, 2, 4, 90, 6, -90);
+		addBarcode(first, 20, 30, 1, 7);
+		roundTrip(first);
+
+		Pixy2Frame second = lineFrame(2);
+		addVector(second, 11, 50, 40, 1, 4, 0);
+		addVector(second, 70, 50, 70, 0, 6, 1);
+		roundTrip(second);
+	}
+
+	@Test
+	public void worstCaseFitsMaxSize() {
+		Pixy2Frame low = fullFrame(1, false);
+		Pixy2Frame high = fullFrame(2, true);
+		int keyLength = roundTrip(low);
+		assertTrue("keyframe " + keyLength, keyLength <= Pixy2FrameCodec.CODEC_MAX_SIZE);
+		// every field swings across its whole range
+		int deltaLength = roundTrip(high);
+		assertTrue("delta " + deltaLength, deltaLength <= Pixy2FrameCodec.CODEC_MAX_SIZE);
+		deltaLength = roundTrip(fullFrame(3, false));
+		assertTrue("delta " + deltaLength, deltaLength <= Pixy2FrameCodec.CODEC_MAX_SIZE);
+	}
+
+	@Test
+	public void bufferTooSmall() {
+		Pixy2Frame frame = fullFrame(1, true);
+		byte[] small = new byte[64];
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, encoder.encode(frame, small, 0));
+		// a failed encode must not leave a reference behind
+		assertEquals(0, encoder.getReferenceSequence());
+		int length = encoder.encode(frame, buffer, 0);
+		assertEquals(Pixy2FrameCodec.CODEC_KEYFRAME, buffer[0] & Pixy2FrameCodec.CODEC_KEYFRAME);
+		assertEquals(length, decoder.decode(buffer, 0, length, decoded));
+	}
+
+	@Test
+	public void truncatedInputIsRejected() {
+		Pixy2Frame first = fullFrame(1, false);
+		int length = encoder.encode(first, buffer, 0);
+		for (int n = 0; n < length; n++)
+			assertTrue("keyframe cut at " + n, new Pixy2FrameCodec().decode(buffer, 0, n, decoded) < 0);
+		assertEquals(length, decoder.decode(buffer, 0, length, decoded));
+
+		Pixy2Frame second = fullFrame(2, true);
+		length = encoder.encode(second, buffer, 0);
+		for (int n = 0; n < length; n++)
+			assertTrue("delta cut at " + n, decoder.decode(buffer, 0, n, decoded) < 0);
+		// failed decodes keep the reference
+		assertEquals(length, decoder.decode(buffer, 0, length, decoded));
+		assertFramesEqual(second, decoded);
+	}
+
+	@Test
+	public void lostFrameNeedsKeyframe() {
+		roundTrip(blocksFrame(1, 0));
+		encoder.encode(blocksFrame(2, 0), buffer, 0); // lost
+
+		Pixy2Frame third = blocksFrame(3, 0);
+		addBlock(third, 1, 1, 2, 3, 4, 5, 6, 7);
+		int length = encoder.encode(third, buffer, 0);
+		assertEquals(Pixy2FrameCodec.CODEC_RESULT_NO_REFERENCE, decoder.decode(buffer, 0, length, decoded));
+
+		encoder.requestKeyframe();
+		Pixy2Frame fourth = blocksFrame(4, 0);
+		addBlock(fourth, 1, 1, 2, 3, 4, 5, 6, 7);
+		roundTrip(fourth);
+		assertEquals(4, decoder.getReferenceSequence());
+	}
+
+	@Test
+	public void keyframeInterval() {
+		encoder.setKeyframeInterval(3);
+		int keyframes = 0;
+		for (int i = 1; i <= 9; i++) {
+			encoder.encode(blocksFrame(i, 0), buffer, 0);
+			keyframes += buffer[0] & Pixy2FrameCodec.CODEC_KEYFRAME;
+		}
+		assertEquals(3, keyframes);
+	}
+
+	@Test
+	public void readsSequenceWithoutDecoding() {
+		int length = encoder.encode(blocksFrame(300, 0), buffer, 0);
+		assertEquals(300, Pixy2FrameCodec.getSequence(buffer, 0, length));
+		assertEquals(-1, Pixy2FrameCodec.getSequence(buffer, 0, 2));
+	}
+
+	private int roundTrip(Pixy2Frame frame) {
+		int length = encoder.encode(frame, buffer, 0);
+		assertTrue(length > 0);
+		assertEquals(length, decoder.decode(buffer, 0, length, decoded));
+		assertFramesEqual(frame, decoded);
+		return length;
+	}
+
+	private static Pixy2Frame blocksFrame(long sequence, long timestamp) {
+		Pixy2Frame frame = new Pixy2Frame();
+		frame.sequence = sequence;
+		frame.timestamp = timestamp;
+		frame.contents = Pixy2Frame.FRAME_BLOCKS;
+		return frame;
+	}
+
+	private static Pixy2Frame lineFrame(long sequence) {
+		Pixy2Frame frame = new Pixy2Frame();
+		frame.sequence = sequence;
+		frame.timestamp = sequence * 16667;
+		frame.contents = Pixy2Frame.FRAME_LINE;
+		return frame;
+	}
+
+	/**
+	 * Fills every field array with values at one end of what Pixy2 can send
+	 */
+	private static Pixy2Frame fullFrame(long sequence, boolean high) {
+		Pixy2Frame frame = blocksFrame(sequence, high ? Long.MAX_VALUE / 2 : 0);
+		frame.contents |= Pixy2Frame.FRAME_LINE;
+		int u8 = high ? 255 : 0, u16 = high ? 0xffff : 0, s8 = high ? 127 : -128;
+		short s16 = high ? Short.MAX_VALUE : Short.MIN_VALUE;
+		for (int i = 0; i < Pixy2Frame.FRAME_MAX_BLOCKS; i++)
+			addBlock(frame, u16, u16, u16, u16, u16, s16, i, u8);
+		for (int i = 0; i < Pixy2Frame.FRAME_MAX_VECTORS; i++)
+			addVector(frame, u8, u8, u8, u8, i, u8);
+		for (int i = 0; i < Pixy2Frame.FRAME_MAX_INTERSECTIONS; i++) {
+			addIntersection(frame, u8, u8, u8);
+			for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++) {
+				frame.intersectionLineIndex[i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l] = s8;
+				frame.intersectionLineAngle[i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l] = s16;
+			}
+		}
+		for (int i = 0; i < Pixy2Frame.FRAME_MAX_BARCODES; i++)
+			addBarcode(frame, u8, u8, u8, u8);
+		frame.lineFeatures = Pixy2Line.LINE_ALL_FEATURES;
+		return frame;
+	}
+
+	private static void addBlock(Pixy2Frame frame, int signature, int x, int y, int width, int height, int angle,
+			int index, int age) {
+		int i = frame.blockCount++;
+		frame.blockSignature[i] = signature;
+		frame.blockX[i] = x;
+		frame.blockY[i] = y;
+		frame.blockWidth[i] = width;
+		frame.blockHeight[i] = height;
+		frame.blockAngle[i] = angle;
+		frame.blockIndex[i] = index;
+		frame.blockAge[i] = age;
+	}
+
+	private static void addVector(Pixy2Frame frame, int x0, int y0, int x1, int y1, int index, int flags) {
+		int i = frame.vectorCount++;
+		frame.vectorX0[i] = x0;
+		frame.vectorY0[i] = y0;
+		frame.vectorX1[i] = x1;
+		frame.vectorY1[i] = y1;
+		frame.vectorIndex[i] = index;
+		frame.vectorFlags[i] = flags;
+		frame.lineFeatures |= Pixy2Line.LINE_VECTOR;
+	}
+
+	private static void addIntersection(Pixy2Frame frame, int x, int y, int number, int... lines) {
+		int i = frame.intersectionCount++;
+		frame.intersectionX[i] = x;
+		frame.intersectionY[i] = y;
+		frame.intersectionNumber[i] = number;
+		for (int l = 0; l < lines.length / 2; l++) {
+			frame.intersectionLineIndex[i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l] = lines[2 * l];
+			frame.intersectionLineAngle[i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l] = (short) lines[2 * l + 1];
+		}
+		frame.lineFeatures |= Pixy2Line.LINE_INTERSECTION;
+	}
+
+	private static void addBarcode(Pixy2Frame frame, int x, int y, int flags, int code) {
+		int i = frame.barcodeCount++;
+		frame.barcodeX[i] = x;
+		frame.barcodeY[i] = y;
+		frame.barcodeFlags[i] = flags;
+		frame.barcodeCode[i] = code;
+		frame.lineFeatures |= Pixy2Line.LINE_BARCODE;
+	}
+
+	private static void assertFramesEqual(Pixy2Frame expected, Pixy2Frame actual) {
+		assertEquals("sequence", expected.sequence, actual.sequence);
+		assertEquals("timestamp", expected.timestamp, actual.timestamp);
+		assertEquals("contents", expected.contents, actual.contents);
+		assertEquals("blocks", expected.blockCount, actual.blockCount);
+		for (int i = 0; i < expected.blockCount; i++) {
+			String b = "block " + i + " ";
+			assertEquals(b + "signature", expected.blockSignature[i], actual.blockSignature[i]);
+			assertEquals(b + "x", expected.blockX[i], actual.blockX[i]);
+			assertEquals(b + "y", expected.blockY[i], actual.blockY[i]);
+			assertEquals(b + "width", expected.blockWidth[i], actual.blockWidth[i]);
+			assertEquals(b + "height", expected.blockHeight[i], actual.blockHeight[i]);
+			assertEquals(b + "angle", expected.blockAngle[i], actual.blockAngle[i]);
+			assertEquals(b + "index", expected.blockIndex[i], actual.blockIndex[i]);
+			assertEquals(b + "age", expected.blockAge[i], actual.blockAge[i]);
+		}
+		if ((expected.contents & Pixy2Frame.FRAME_LINE) == 0)
+			return;
+		assertEquals("features", expected.lineFeatures, actual.lineFeatures);
+		assertEquals("vectors", expected.vectorCount, actual.vectorCount);
+		for (int i = 0; i < expected.vectorCount; i++) {
+			String v = "vector " + i + " ";
+			assertEquals(v + "x0", expected.vectorX0[i], actual.vectorX0[i]);
+			assertEquals(v + "y0", expected.vectorY0[i], actual.vectorY0[i]);
+			assertEquals(v + "x1", expected.vectorX1[i], actual.vectorX1[i]);
+			assertEquals(v + "y1", expected.vectorY1[i], actual.vectorY1[i]);
+			assertEquals(v + "index", expected.vectorIndex[i], actual.vectorIndex[i]);
+			assertEquals(v + "flags", expected.vectorFlags[i], actual.vectorFlags[i]);
+		}
+		assertEquals("intersections", expected.intersectionCount, actual.intersectionCount);
+		for (int i = 0; i < expected.intersectionCount; i++) {
+			String n = "intersection " + i + " ";
+			assertEquals(n + "x", expected.intersectionX[i], actual.intersectionX[i]);
+			assertEquals(n + "y", expected.intersectionY[i], actual.intersectionY[i]);
+			assertEquals(n + "number", expected.intersectionNumber[i], actual.intersectionNumber[i]);
+			for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++) {
+				int k = i * Pixy2Line.LINE_MAX_INTERSECTION_LINES + l;
+				assertEquals(n + "line index", expected.intersectionLineIndex[k], actual.intersectionLineIndex[k]);
+				assertEquals(n + "line angle", expected.intersectionLineAngle[k], actual.intersectionLineAngle[k]);
+			}
+		}
+		assertEquals("barcodes", expected.barcodeCount, actual.barcodeCount);
+		for (int i = 0; i < expected.barcodeCount; i++) {
+			String c = "barcode " + i + " ";
+			assertEquals(c + "x", expected.barcodeX[i], actual.barcodeX[i]);
+			assertEquals(c + "y", expected.barcodeY[i], actual.barcodeY[i]);
+			assertEquals(c + "flags", expected.barcodeFlags[i], actual.barcodeFlags[i]);
+			assertEquals(c + "code", expected.barcodeCode[i], actual.barcodeCode[i]);
+		}
+	}
+
+}
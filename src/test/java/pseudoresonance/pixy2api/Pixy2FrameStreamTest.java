@@ -0,0 +1,116 @@
+package pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Pixy2FrameStreamTest {
+	private final static int PORT = 5895;
+
+	private Pixy2FrameReceiver receiver;
+
+	@Before
+	public void setUp() {
+		receiver = new Pixy2FrameReceiver(PORT);
+		assertEquals(Pixy2.PIXY_RESULT_OK, receiver.start());
+	}
+
+	@After
+	public void tearDown() {
+		receiver.stop();
+	}
+
+	@Test
+	public void streamsFramesOverLoopback() throws InterruptedException {
+		Pixy2FrameSender sender = new Pixy2FrameSender("127.0.0.1", PORT);
+		assertEquals(Pixy2.PIXY_RESULT_OK, sender.open());
+		try {
+			for (int i = 1; i <= 20; i++)
+				sender.frameReceived(frame(i));
+			awaitSequence(20);
+		} finally {
+			sender.close();
+		}
+		Pixy2Frame latest = new Pixy2Frame();
+		assertTrue(receiver.getLatestFrame(latest));
+		assertEquals(20, latest.getSequence());
+		assertEquals(1, latest.getBlockCount());
+		assertEquals(20, latest.getBlockX(0));
+		assertEquals(0, receiver.getKeyframeRequestCount());
+	}
+
+	@Test
+	public void lostKeyframeIsRequestedOnce() throws IOException, InterruptedException {
+		Pixy2FrameCodec codec = new Pixy2FrameCodec();
+		byte[] data = new byte[Pixy2FrameSender.STREAM_HEADER_SIZE + Pixy2FrameCodec.CODEC_MAX_SIZE];
+		data[0] = Pixy2FrameSender.STREAM_MAGIC;
+		data[1] = Pixy2FrameSender.STREAM_FRAME;
+		SocketAddress target = new InetSocketAddress("127.0.0.1", PORT);
+		DatagramChannel channel = DatagramChannel.open();
+		try {
+			channel.bind(new InetSocketAddress("127.0.0.1", 0));
+			send(channel, target, codec, data, frame(1));
+			awaitSequence(1);
+
+			codec.requestKeyframe();
+			codec.encode(frame(2), data, Pixy2FrameSender.STREAM_HEADER_SIZE); // lost
+			for (int i = 3; i <= 20; i++)
+				send(channel, target, codec, data, frame(i));
+
+			// one request for all undecodable frames within the request interval
+			ByteBuffer request = ByteBuffer.allocate(16);
+			channel.configureBlocking(false);
+			for (int i = 0; i < 200 && channel.receive(request) == null; i++)
+				Thread.sleep(5);
+			assertEquals(Pixy2FrameSender.STREAM_HEADER_SIZE, request.position());
+			assertEquals(Pixy2FrameSender.STREAM_KEYFRAME_REQUEST, request.get(1));
+			Thread.sleep(10);
+			assertEquals(1, receiver.getKeyframeRequestCount());
+			assertEquals(1, receiver.getLatestSequence());
+
+			codec.requestKeyframe();
+			send(channel, target, codec, data, frame(21));
+			awaitSequence(21);
+			assertEquals(1, receiver.getKeyframeRequestCount());
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void awaitSequence(long sequence) throws InterruptedException {
+		for (int i = 0; i < 200 && receiver.getLatestSequence() < sequence; i++)
+			Thread.sleep(5);
+		assertEquals(sequence, receiver.getLatestSequence());
+	}
+
+	private static void send(DatagramChannel channel, SocketAddress target, Pixy2FrameCodec codec, byte[] data,
+			Pixy2Frame frame) throws IOException {
+		int length = codec.encode(frame, data, Pixy2FrameSender.STREAM_HEADER_SIZE);
+		channel.send(ByteBuffer.wrap(data, 0, Pixy2FrameSender.STREAM_HEADER_SIZE + length), target);
+	}
+
+	private static Pixy2Frame frame(int sequence) {
+		Pixy2Frame frame = new Pixy2Frame();
+		frame.sequence = sequence;
+		frame.timestamp = System.nanoTime();
+		frame.contents = Pixy2Frame.FRAME_BLOCKS;
+		frame.blockCount = 1;
+		frame.blockSignature[0] = 1;
+		frame.blockX[0] = sequence;
+		frame.blockY[0] = 100;
+		frame.blockWidth[0] = 10;
+		frame.blockHeight[0] = 10;
+		frame.blockIndex[0] = 1;
+		return frame;
+	}
+
+}
@@ -0,0 +1,104 @@
+package pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pseudoresonance.links.Link;
+import pseudoresonance.pixy2api.Pixy2.Checksum;
+
+public class Pixy2QueryPlannerTest {
+
+	private Pixy2QueryPlanner planner;
+
+	@Before
+	public void setUp() {
+		planner = new Pixy2QueryPlanner(new Pixy2Poller(Pixy2.createInstance(new NoLink())));
+	}
+
+	@Test
+	public void sameSigmapRequestsLargestCount() {
+		planner.register(new Pixy2BlockQuery(Pixy2CCC.CCC_SIG1, 1));
+		planner.register(new Pixy2BlockQuery(Pixy2CCC.CCC_SIG1, 3));
+		assertEquals(Pixy2CCC.CCC_SIG1, planner.getSigmap());
+		assertEquals(3, planner.getMaxBlocks());
+	}
+
+	@Test
+	public void differentSigmapsRequestAllBlocks() {
+		planner.register(new Pixy2BlockQuery(Pixy2CCC.CCC_SIG1, 1));
+		planner.register(new Pixy2BlockQuery(Pixy2CCC.CCC_SIG2, 1));
+		assertEquals(Pixy2CCC.CCC_SIG1 | Pixy2CCC.CCC_SIG2, planner.getSigmap());
+		assertEquals(Pixy2BlockQuery.QUERY_UNLIMITED, planner.getMaxBlocks());
+	}
+
+	@Test
+	public void unregisterReplans() {
+		Pixy2BlockQuery a = new Pixy2BlockQuery(Pixy2CCC.CCC_SIG1, 2);
+		Pixy2BlockQuery b = new Pixy2BlockQuery(Pixy2CCC.CCC_SIG2, 1);
+		planner.register(a);
+		planner.register(b);
+		planner.unregister(b);
+		assertEquals(Pixy2CCC.CCC_SIG1, planner.getSigmap());
+		assertEquals(2, planner.getMaxBlocks());
+		planner.unregister(a);
+		assertEquals(0, planner.getSigmap());
+		assertEquals(0, planner.getMaxBlocks());
+	}
+
+	@Test
+	public void largeBlocksOfOneSignatureDoNotStarveAnother() {
+		Pixy2BlockQuery a = new Pixy2BlockQuery(Pixy2CCC.CCC_SIG1, 1);
+		Pixy2BlockQuery b = new Pixy2BlockQuery(Pixy2CCC.CCC_SIG2, 1);
+		planner.register(a);
+		planner.register(b);
+
+		// Pixy2 sends the largest blocks of the requested sigmap first
+		Pixy2Frame frame = new Pixy2Frame();
+		frame.contents = Pixy2Frame.FRAME_BLOCKS;
+		addBlock(frame, 1, 40, 40);
+		addBlock(frame, 1, 30, 30);
+		addBlock(frame, 2, 10, 10);
+		frame.blockCount = Math.min(frame.blockCount, planner.getMaxBlocks());
+		planner.frameReceived(frame);
+
+		Pixy2Frame result = new Pixy2Frame();
+		a.getBlocks(result);
+		assertEquals(1, result.getBlockCount());
+		assertEquals(40, result.getBlockWidth(0));
+		b.getBlocks(result);
+		assertEquals(1, result.getBlockCount());
+		assertEquals(2, result.getBlockSignature(0));
+	}
+
+	private static void addBlock(Pixy2Frame frame, int signature, int width, int height) {
+		int i = frame.blockCount++;
+		frame.blockSignature[i] = signature;
+		frame.blockWidth[i] = width;
+		frame.blockHeight[i] = height;
+		frame.blockIndex[i] = i;
+	}
+
+	private static class NoLink implements Link {
+		public int open(int arg) {
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+
+		public void close() {
+		}
+
+		public int receive(byte[] buffer, int length, Checksum cs) {
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+
+		public int receive(byte[] buffer, int length) {
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+
+		public int send(byte[] buffer, int length) {
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+	}
+
+}
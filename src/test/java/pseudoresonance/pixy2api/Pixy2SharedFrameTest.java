@@ -0,0 +1,161 @@
+package pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Pixy2SharedFrameTest {
+	private final static int SLOTS = 4;
+
+	private File file;
+	private Pixy2SharedFrameWriter writer;
+	private Pixy2SharedFrameReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("pixy2", ".shm");
+		writer = new Pixy2SharedFrameWriter(file, SLOTS);
+		assertEquals(Pixy2.PIXY_RESULT_OK, writer.open());
+		reader = new Pixy2SharedFrameReader(file);
+		assertEquals(Pixy2.PIXY_RESULT_OK, reader.open());
+	}
+
+	@After
+	public void tearDown() {
+		reader.close();
+		writer.close();
+		file.delete();
+	}
+
+	@Test
+	public void readsLatestFrameAndRing() {
+		Pixy2Frame frame = new Pixy2Frame();
+		assertFalse(reader.getLatestFrame(frame));
+		for (int i = 1; i <= 3; i++)
+			writer.publish(frame(i, frame));
+
+		Pixy2Frame read = new Pixy2Frame();
+		assertEquals(3, reader.getCount());
+		assertTrue(reader.getLatestFrame(read));
+		assertEquals(3, read.getSequence());
+		assertConsistent(read);
+		for (int p = 0; p < 3; p++) {
+			assertTrue(reader.getFrame(p, read));
+			assertEquals(p + 1, read.getSequence());
+			assertConsistent(read);
+		}
+		assertFalse(reader.getFrame(3, read));
+	}
+
+	@Test
+	public void rejectsOverwrittenPositions() {
+		Pixy2Frame frame = new Pixy2Frame();
+		for (int i = 1; i <= 10; i++)
+			writer.publish(frame(i, frame));
+
+		Pixy2Frame read = new Pixy2Frame();
+		assertFalse(reader.getFrame(10 - SLOTS - 1, read));
+		assertTrue(reader.getFrame(10 - SLOTS, read));
+		assertEquals(10 - SLOTS + 1, read.getSequence());
+	}
+
+	@Test
+	public void readersNeverSeeTornOrNewerFrames() throws InterruptedException {
+		final int frames = 200000;
+		final AtomicLong bad = new AtomicLong();
+		final AtomicLong reads = new AtomicLong();
+		Thread writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Pixy2Frame frame = new Pixy2Frame();
+				for (int i = 1; i <= frames; i++)
+					writer.publish(frame(i, frame));
+			}
+		});
+		Thread[] readers = new Thread[2];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Pixy2SharedFrameReader reader = new Pixy2SharedFrameReader(file);
+					if (reader.open() != Pixy2.PIXY_RESULT_OK) {
+						bad.incrementAndGet();
+						return;
+					}
+					Pixy2Frame read = new Pixy2Frame();
+					long count;
+					do {
+						count = reader.getCount();
+						// the oldest frame in the ring is the one most likely lapped mid-read
+						long position = Math.max(count - SLOTS, 0);
+						if (reader.getFrame(position, read)) {
+							reads.incrementAndGet();
+							if (read.getSequence() != position + 1 || !isConsistent(read))
+								bad.incrementAndGet();
+						}
+						if (reader.getLatestFrame(read)) {
+							reads.incrementAndGet();
+							if (!isConsistent(read))
+								bad.incrementAndGet();
+						}
+					} while (count < frames);
+					reader.close();
+				}
+			});
+		}
+		for (Thread t : readers)
+			t.start();
+		writerThread.start();
+		writerThread.join();
+		for (Thread t : readers)
+			t.join();
+
+		assertTrue(reads.get() > 0);
+		assertEquals(0, bad.get());
+	}
+
+	/**
+	 * Fills frame with blocks derived from its sequence number, so a copy mixing
+	 * two frames can be detected
+	 */
+	private static Pixy2Frame frame(long sequence, Pixy2Frame frame) {
+		frame.clear();
+		frame.sequence = sequence;
+		frame.timestamp = sequence * 3;
+		frame.contents = Pixy2Frame.FRAME_BLOCKS;
+		int n = 1 + (int) (sequence % 5);
+		for (int i = 0; i < n; i++) {
+			frame.blockSignature[i] = 1;
+			frame.blockX[i] = (int) sequence + i;
+			frame.blockY[i] = (int) sequence * 2;
+			frame.blockWidth[i] = i + 1;
+			frame.blockHeight[i] = 1;
+			frame.blockIndex[i] = (int) sequence;
+		}
+		frame.blockCount = n;
+		return frame;
+	}
+
+	private static boolean isConsistent(Pixy2Frame frame) {
+		long s = frame.sequence;
+		if (frame.timestamp != s * 3 || frame.blockCount != 1 + (int) (s % 5))
+			return false;
+		for (int i = 0; i < frame.blockCount; i++)
+			if (frame.blockX[i] != (int) s + i || frame.blockY[i] != (int) s * 2 || frame.blockIndex[i] != (int) s)
+				return false;
+		return true;
+	}
+
+	private static void assertConsistent(Pixy2Frame frame) {
+		assertTrue(isConsistent(frame));
+	}
+
+}
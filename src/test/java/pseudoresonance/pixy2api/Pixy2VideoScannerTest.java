@@ -0,0 +1,114 @@
+package pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pseudoresonance.links.Link;
+import pseudoresonance.pixy2api.Pixy2.Checksum;
+
+public class Pixy2VideoScannerTest {
+
+	private final static int RGB_REQUEST_SIZE = Pixy2.PIXY_SEND_HEADER_SIZE + 5;
+
+	private RGBLink link;
+	private Pixy2 pixy;
+	private Pixy2VideoScanner scanner;
+
+	@Before
+	public void setUp() {
+		link = new RGBLink();
+		pixy = Pixy2.createInstance(link);
+		scanner = new Pixy2VideoScanner(new Pixy2Poller(pixy), 8, 8);
+	}
+
+	@Test
+	public void backToBackCyclesSendOneBatch() {
+		scanner.run(pixy);
+		scanner.run(pixy);
+		scanner.run(pixy);
+		assertEquals(1, link.sends);
+		assertEquals(Pixy2VideoScanner.SCANNER_DEFAULT_BUDGET, link.requests);
+	}
+
+	@Test
+	public void sendsBatchEachPeriod() throws InterruptedException {
+		scanner.setRate(1000);
+		scanner.run(pixy);
+		Thread.sleep(5);
+		scanner.run(pixy);
+		assertEquals(2, link.sends);
+	}
+
+	@Test
+	public void fillsRasterFromSamples() {
+		scanner.setRate(1e9);
+		scanner.setBudget(64);
+		scanner.run(pixy);
+		assertEquals(1, scanner.getScanCount());
+		int[] raster = new int[64];
+		scanner.getRaster(raster);
+		int[] expected = new int[64];
+		Arrays.fill(expected, 0x102030);
+		assertEquals(Arrays.toString(expected), Arrays.toString(raster));
+	}
+
+	@Test
+	public void rejectsNonPositiveRate() {
+		try {
+			scanner.setRate(0);
+			fail("Expected rate to be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Counts getRGB requests and answers each with the same color
+	 */
+	private static class RGBLink implements Link {
+		int sends = 0;
+		int requests = 0;
+		private int pending = 0;
+		private int position = 0;
+		private final byte[] response = { (byte) (Pixy2.PIXY_NO_CHECKSUM_SYNC & 0xff),
+				(byte) ((Pixy2.PIXY_NO_CHECKSUM_SYNC >> 8) & 0xff), Pixy2.PIXY_TYPE_RESPONSE_RESULT, 4, 0x10, 0x20,
+				0x30, 0 };
+
+		public int open(int arg) {
+			return 0;
+		}
+
+		public void close() {
+		}
+
+		public int receive(byte[] buffer, int length, Checksum cs) {
+			if (cs != null)
+				cs.reset();
+			for (int i = 0; i < length; i++) {
+				if (position == 0 && pending-- <= 0)
+					return Pixy2.PIXY_RESULT_ERROR;
+				buffer[i] = response[position];
+				position = (position + 1) % response.length;
+				if (cs != null)
+					cs.updateChecksum(buffer[i] & 0xff);
+			}
+			return length;
+		}
+
+		public int receive(byte[] buffer, int length) {
+			return receive(buffer, length, null);
+		}
+
+		public int send(byte[] buffer, int length) {
+			sends++;
+			requests += length / RGB_REQUEST_SIZE;
+			pending += length / RGB_REQUEST_SIZE;
+			return length;
+		}
+	}
+
+}